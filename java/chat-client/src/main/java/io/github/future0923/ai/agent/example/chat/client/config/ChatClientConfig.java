@@ -1,20 +1,20 @@
 package io.github.future0923.ai.agent.example.chat.client.config;
 
+import io.github.future0923.ai.agent.example.chat.memory.support.BoundedInMemoryChatMemory;
+import io.github.future0923.ai.agent.example.vector.store.support.VectorStoreSnapshot;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.InMemoryChatMemory;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.embedding.EmbeddingModel;
-import org.springframework.ai.reader.TextReader;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.SimpleVectorStore;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
 
+import java.nio.file.Path;
+import java.time.Duration;
+
 /**
  * 配置
  *
@@ -41,29 +41,32 @@ public class ChatClientConfig {
     }
 
     /**
-     * 聊天记忆
+     * 聊天记忆，最多保存10000个会话，每个会话最近100条消息，1小时没有读写自动过期
      */
     @Bean
     public ChatMemory chatMemory() {
-        return new InMemoryChatMemory();
-    }
-
-    /**
-     * 向量数据库
-     */
-    @Bean
-    public VectorStore vectorStore(EmbeddingModel embeddingModel) {
-        return SimpleVectorStore.builder(embeddingModel).build();
+        return BoundedInMemoryChatMemory.builder()
+                .maxConversations(10000)
+                .maxMessages(100)
+                .ttl(Duration.ofHours(1))
+                .build();
     }
 
     /**
-     * 初始化向量数据库
+     * 向量数据库，启动时加载服务条款的向量快照，服务条款或向量模型变了才重新向量化
      */
     @Bean
-    public CommandLineRunner ingestTermOfServiceToVectorStore(
-            VectorStore vectorStore,
-            @Value("classpath:rag/terms-of-service.txt") Resource resource) {
-        return args -> vectorStore.write(new TokenTextSplitter().transform(new TextReader(resource).read()));
+    public VectorStore vectorStore(EmbeddingModel embeddingModel,
+                                   @Value("classpath:rag/terms-of-service.txt") Resource resource,
+                                   @Value("${chat-client.rag.snapshot-dir}") String snapshotDir,
+                                   @Value("${spring.ai.dashscope.embedding.options.model:text-embedding-v1}") String embeddingModelName) {
+        return VectorStoreSnapshot.builder()
+                .embeddingModel(embeddingModel)
+                .source(resource)
+                .directory(Path.of(snapshotDir))
+                .fingerprint(embeddingModelName)
+                .build()
+                .load();
     }
 
 }
@@ -0,0 +1,231 @@
+package io.github.future0923.ai.agent.example.chat.memory.support;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * 有界的内存聊天记忆，替代会无限增长的InMemoryChatMemory
+ * <p>
+ * 会话按id哈希到多个分段，每个分段一把锁，不同会话的并发读写基本不会互相等待。
+ * <li>每个会话只保留最近maxMessages条消息
+ * <li>每个分段最多保存maxConversations / 分段数个会话，超过后淘汰最久没有访问的会话
+ * <li>会话超过ttl没有读写就过期，读取时当作不存在，写入时顺带清理所在分段过期的会话
+ *
+ * @author future0923
+ */
+public class BoundedInMemoryChatMemory implements ChatMemory {
+
+    private final Segment[] segments;
+
+    private final int maxMessages;
+
+    private final long ttlNanos;
+
+    private final LongSupplier ticker;
+
+    private BoundedInMemoryChatMemory(Builder builder) {
+        Assert.isTrue(builder.maxConversations > 0, "maxConversations must be greater than 0");
+        Assert.isTrue(builder.maxMessages > 0, "maxMessages must be greater than 0");
+        Assert.isTrue(builder.concurrencyLevel > 0, "concurrencyLevel must be greater than 0");
+        Assert.isTrue(!builder.ttl.isNegative() && !builder.ttl.isZero(), "ttl must be positive");
+        Assert.notNull(builder.ticker, "ticker cannot be null");
+        this.maxMessages = builder.maxMessages;
+        this.ttlNanos = builder.ttl.toNanos();
+        this.ticker = builder.ticker;
+        int concurrencyLevel = Math.min(builder.concurrencyLevel, builder.maxConversations);
+        this.segments = new Segment[concurrencyLevel];
+        for (int i = 0; i < concurrencyLevel; i++) {
+            // 余数分给前面的分段，总容量等于maxConversations
+            int capacity = builder.maxConversations / concurrencyLevel + (i < builder.maxConversations % concurrencyLevel ? 1 : 0);
+            this.segments[i] = new Segment(capacity);
+        }
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        Segment segment = segment(conversationId);
+        long now = ticker.getAsLong();
+        segment.lock.lock();
+        try {
+            segment.expire(now);
+            Conversation conversation = segment.conversations.computeIfAbsent(conversationId, key -> new Conversation());
+            conversation.accessTime = now;
+            for (Message message : messages) {
+                conversation.messages.addLast(message);
+                if (conversation.messages.size() > maxMessages) {
+                    conversation.messages.removeFirst();
+                }
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        if (lastN <= 0) {
+            return List.of();
+        }
+        Segment segment = segment(conversationId);
+        long now = ticker.getAsLong();
+        segment.lock.lock();
+        try {
+            Conversation conversation = segment.conversations.get(conversationId);
+            if (Objects.isNull(conversation)) {
+                return List.of();
+            }
+            if (now - conversation.accessTime > ttlNanos) {
+                segment.conversations.remove(conversationId);
+                return List.of();
+            }
+            conversation.accessTime = now;
+            int size = Math.min(lastN, conversation.messages.size());
+            List<Message> result = new ArrayList<>(size);
+            Iterator<Message> iterator = conversation.messages.descendingIterator();
+            for (int i = 0; i < size; i++) {
+                result.add(iterator.next());
+            }
+            Collections.reverse(result);
+            return result;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        Segment segment = segment(conversationId);
+        segment.lock.lock();
+        try {
+            segment.conversations.remove(conversationId);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * 当前保存的会话数，包括已过期还没清理的
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.conversations.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private Segment segment(String conversationId) {
+        int hash = conversationId.hashCode();
+        // 打散低位，避免连续的数字id集中到少数分段
+        hash ^= hash >>> 16;
+        return segments[Math.floorMod(hash, segments.length)];
+    }
+
+    public static BoundedInMemoryChatMemory.Builder builder() {
+        return new BoundedInMemoryChatMemory.Builder();
+    }
+
+    private static final class Conversation {
+
+        private final Deque<Message> messages = new ArrayDeque<>();
+
+        private long accessTime;
+    }
+
+    /**
+     * 按访问顺序排列的会话，调用方持有lock
+     */
+    private final class Segment {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final LinkedHashMap<String, Conversation> conversations;
+
+        private Segment(int capacity) {
+            this.conversations = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Conversation> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        /**
+         * 从最久没有访问的会话开始清理，遇到没过期的就停止
+         */
+        private void expire(long now) {
+            Iterator<Conversation> iterator = conversations.values().iterator();
+            while (iterator.hasNext() && now - iterator.next().accessTime > ttlNanos) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public static final class Builder {
+
+        // 最多保存的会话数
+        private int maxConversations = 10000;
+
+        // 每个会话保留的消息数
+        private int maxMessages = 100;
+
+        // 会话多久没有读写后过期
+        private Duration ttl = Duration.ofHours(1);
+
+        // 分段数，即锁的个数
+        private int concurrencyLevel = 16;
+
+        private LongSupplier ticker = System::nanoTime;
+
+        public BoundedInMemoryChatMemory.Builder maxConversations(int maxConversations) {
+            this.maxConversations = maxConversations;
+            return this;
+        }
+
+        public BoundedInMemoryChatMemory.Builder maxMessages(int maxMessages) {
+            this.maxMessages = maxMessages;
+            return this;
+        }
+
+        public BoundedInMemoryChatMemory.Builder ttl(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        public BoundedInMemoryChatMemory.Builder concurrencyLevel(int concurrencyLevel) {
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
+        /**
+         * 纳秒时钟，测试时替换
+         */
+        public BoundedInMemoryChatMemory.Builder ticker(LongSupplier ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public BoundedInMemoryChatMemory build() {
+            return new BoundedInMemoryChatMemory(this);
+        }
+    }
+}
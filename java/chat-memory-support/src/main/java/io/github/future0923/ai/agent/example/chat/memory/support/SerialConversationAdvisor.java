@@ -0,0 +1,218 @@
+package io.github.future0923.ai.agent.example.chat.memory.support;
+
+import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 同一会话的多轮对话依次执行，不同会话互不影响
+ * <p>
+ * MessageChatMemoryAdvisor先读取历史、再写入用户消息，回答结束后写入助手消息，同一会话的并发请求（如重复提交）会交错读写，
+ * 历史顺序错乱、上下文重复。本顾问排在MessageChatMemoryAdvisor之前，按会话id排队：前一轮结束（完成、出错或取消）后才开始下一轮。
+ * <li>每个会话只记录队尾，排队不占用线程，流式请求在前一轮结束的线程上继续执行
+ * <li>同步请求在调用线程上等待
+ * <li>排队最多等待maxWait，超时后这一轮直接失败，避免前一轮卡住时后面的请求一直占着线程；超时的轮次仍要等前一轮结束才放行下一轮，顺序不变
+ * <li>记录每轮的排队耗时
+ *
+ * @author future0923
+ */
+public class SerialConversationAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+
+    /**
+     * 排在MessageChatMemoryAdvisor之前
+     */
+    public static final int DEFAULT_ORDER = Advisor.DEFAULT_CHAT_MEMORY_PRECEDENCE_ORDER - 500;
+
+    public static final Duration DEFAULT_MAX_WAIT = Duration.ofMinutes(2);
+
+    private final int order;
+
+    private final Duration maxWait;
+
+    private final Consumer<Duration> queueDelayListener;
+
+    /**
+     * 会话id -> 最后一轮
+     */
+    private final Map<String, Turn> tails = new ConcurrentHashMap<>();
+
+    private final LongAdder turns = new LongAdder();
+
+    private final LongAdder queuedTurns = new LongAdder();
+
+    private final LongAdder totalDelayNanos = new LongAdder();
+
+    private final AtomicLong maxDelayNanos = new AtomicLong();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public SerialConversationAdvisor() {
+        this(DEFAULT_ORDER, DEFAULT_MAX_WAIT, delay -> {
+        });
+    }
+
+    /**
+     * @param queueDelayListener 每轮开始执行时回调排队耗时
+     */
+    public SerialConversationAdvisor(int order, Consumer<Duration> queueDelayListener) {
+        this(order, DEFAULT_MAX_WAIT, queueDelayListener);
+    }
+
+    /**
+     * @param maxWait            排队等待前一轮结束的最长时间
+     * @param queueDelayListener 每轮开始执行时回调排队耗时
+     */
+    public SerialConversationAdvisor(int order, Duration maxWait, Consumer<Duration> queueDelayListener) {
+        Assert.isTrue(Objects.nonNull(maxWait) && !maxWait.isNegative() && !maxWait.isZero(), "maxWait must be positive");
+        Assert.notNull(queueDelayListener, "queueDelayListener cannot be null");
+        this.order = order;
+        this.maxWait = maxWait;
+        this.queueDelayListener = queueDelayListener;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        String conversationId = conversationId(advisedRequest);
+        Turn turn = new Turn();
+        Turn previous = tails.put(conversationId, turn);
+        long enqueued = System.nanoTime();
+        try {
+            if (Objects.nonNull(previous)) {
+                waiting.incrementAndGet();
+                try {
+                    // 只有超时才算排队超时；在非阻塞线程上调用时block()抛出的IllegalStateException原样抛出
+                    previous.released.asMono()
+                            .timeout(maxWait, Mono.error(() -> queueTimeout(conversationId)))
+                            .block();
+                } finally {
+                    waiting.decrementAndGet();
+                }
+            }
+            started(enqueued, Objects.nonNull(previous));
+            return chain.nextAroundCall(advisedRequest);
+        } finally {
+            release(conversationId, previous, turn);
+        }
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        String conversationId = conversationId(advisedRequest);
+        // 订阅时才排队
+        return Flux.defer(() -> {
+            Turn turn = new Turn();
+            Turn previous = tails.put(conversationId, turn);
+            long enqueued = System.nanoTime();
+            Mono<Void> wait = Mono.empty();
+            if (Objects.nonNull(previous)) {
+                waiting.incrementAndGet();
+                wait = previous.released.asMono()
+                        .timeout(maxWait, Mono.error(() -> queueTimeout(conversationId)))
+                        .doFinally(signal -> waiting.decrementAndGet());
+            }
+            return wait
+                    .thenMany(Flux.defer(() -> {
+                        started(enqueued, Objects.nonNull(previous));
+                        return chain.nextAroundStream(advisedRequest);
+                    }))
+                    .doFinally(signal -> release(conversationId, previous, turn));
+        });
+    }
+
+    /**
+     * 排队统计
+     */
+    public QueueStats stats() {
+        long count = turns.sum();
+        return new QueueStats(
+                count,
+                queuedTurns.sum(),
+                waiting.get(),
+                count == 0 ? 0 : totalDelayNanos.sum() / 1e6 / count,
+                maxDelayNanos.get() / 1e6,
+                timeouts.sum()
+        );
+    }
+
+    @Override
+    public String getName() {
+        return this.getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        return this.order;
+    }
+
+    private void started(long enqueued, boolean queued) {
+        long delay = System.nanoTime() - enqueued;
+        turns.increment();
+        if (queued) {
+            queuedTurns.increment();
+        }
+        totalDelayNanos.add(delay);
+        maxDelayNanos.accumulateAndGet(delay, Math::max);
+        queueDelayListener.accept(Duration.ofNanos(delay));
+    }
+
+    private IllegalStateException queueTimeout(String conversationId) {
+        timeouts.increment();
+        return new IllegalStateException("Conversation " + conversationId + " is still busy after waiting " + maxWait.toMillis() + "ms");
+    }
+
+    /**
+     * 这一轮在排队时被取消，也要等前一轮结束后才放行下一轮
+     */
+    private void release(String conversationId, Turn previous, Turn turn) {
+        Runnable release = () -> {
+            turn.released.tryEmitEmpty();
+            tails.remove(conversationId, turn);
+        };
+        if (Objects.isNull(previous)) {
+            release.run();
+        } else {
+            previous.released.asMono().subscribe(null, error -> release.run(), release);
+        }
+    }
+
+    private static String conversationId(AdvisedRequest advisedRequest) {
+        Object conversationId = advisedRequest.adviseContext().get(AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY);
+        return Objects.isNull(conversationId) ? AbstractChatMemoryAdvisor.DEFAULT_CHAT_MEMORY_CONVERSATION_ID : conversationId.toString();
+    }
+
+    private static final class Turn {
+
+        private final Sinks.Empty<Void> released = Sinks.empty();
+    }
+
+    /**
+     * @param turns              已开始执行的轮数
+     * @param queuedTurns        其中需要排队的轮数
+     * @param waiting            正在排队的轮数
+     * @param averageDelayMillis 平均排队耗时
+     * @param maxDelayMillis     最大排队耗时
+     * @param timeouts           排队超时失败的轮数
+     */
+    public record QueueStats(long turns, long queuedTurns, int waiting, double averageDelayMillis, double maxDelayMillis, long timeouts) {
+    }
+}
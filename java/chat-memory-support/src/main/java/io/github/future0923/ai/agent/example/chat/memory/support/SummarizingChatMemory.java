@@ -0,0 +1,314 @@
+package io.github.future0923.ai.agent.example.chat.memory.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * 滚动摘要的聊天记忆
+ * <p>
+ * 最近keepRecent条消息原样保留，更早的消息每攒够summarizeBatch条，由后台线程调用便宜的模型合并进会话摘要。
+ * get返回摘要（一条SystemMessage）加上摘要之后的原始消息。
+ * <li>从被代理的ChatMemory读取未按token截取的消息，先摘要再按maxTokens截取：摘要必定保留，原始消息从最新往前累计，至少保留最新一条
+ * <li>摘要在请求线程之外生成，生成完成前get返回原始消息
+ * <li>同一会话同时只有一个摘要任务，摘要到哪条消息为止用最后几条消息的指纹记录，重复执行不会重复摘要
+ * <li>摘要只保存在本地内存，重启后重新生成
+ *
+ * @author future0923
+ */
+public class SummarizingChatMemory implements ChatMemory, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SummarizingChatMemory.class);
+
+    /**
+     * 用最后几条已摘要消息的指纹定位摘要边界，避免单条重复消息（如"好的"）定位错误
+     */
+    private static final int BOUNDARY_SIZE = 3;
+
+    private static final String SUMMARY_PREFIX = "以下是之前对话的摘要：\n";
+
+    private static final String PROMPT = """
+            请把已有摘要和新的对话内容合并成一段简洁的摘要，保留用户的身份、偏好、关键事实和还没完成的事项，不要编造内容，只输出摘要。
+            已有摘要：
+            %s
+            新的对话内容：
+            %s""";
+
+    private final ChatMemory delegate;
+
+    private final ChatModel chatModel;
+
+    private final ChatOptions options;
+
+    private final int keepRecent;
+
+    private final int summarizeBatch;
+
+    private final int maxTokens;
+
+    private final ToIntFunction<Message> tokenEstimator;
+
+    private final ExecutorService executor;
+
+    /**
+     * 会话id -> 摘要
+     */
+    private final Map<String, Summary> summaries = new ConcurrentHashMap<>();
+
+    /**
+     * 正在生成摘要的会话
+     */
+    private final Set<String> summarizing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 会话id -> 清除次数，清除前提交的摘要任务结果作废
+     */
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    private SummarizingChatMemory(Builder builder) {
+        Assert.notNull(builder.delegate, "delegate cannot be null");
+        Assert.notNull(builder.chatModel, "chatModel cannot be null");
+        Assert.isTrue(builder.keepRecent > 0, "keepRecent must be greater than 0");
+        Assert.isTrue(builder.summarizeBatch > 0, "summarizeBatch must be greater than 0");
+        Assert.isTrue(builder.maxTokens > 0, "maxTokens must be greater than 0");
+        Assert.notNull(builder.tokenEstimator, "tokenEstimator cannot be null");
+        this.delegate = builder.delegate;
+        this.chatModel = builder.chatModel;
+        this.options = builder.options;
+        this.keepRecent = builder.keepRecent;
+        this.summarizeBatch = builder.summarizeBatch;
+        this.maxTokens = builder.maxTokens;
+        this.tokenEstimator = builder.tokenEstimator;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("chat-memory-summary-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        delegate.add(conversationId, messages);
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        List<Message> messages = delegate.get(conversationId, lastN);
+        Summary summary = summaries.get(conversationId);
+        int start = Objects.isNull(summary) ? 0 : summary.indexAfterBoundary(messages);
+        List<Message> unsummarized = messages.subList(start, messages.size());
+        if (unsummarized.size() - keepRecent >= summarizeBatch) {
+            submit(conversationId, summary, List.copyOf(unsummarized.subList(0, unsummarized.size() - keepRecent)));
+        }
+        if (Objects.isNull(summary)) {
+            return latest(messages, 0);
+        }
+        Message summaryMessage = new SystemMessage(SUMMARY_PREFIX + summary.text());
+        List<Message> recent = latest(unsummarized, tokenEstimator.applyAsInt(summaryMessage));
+        List<Message> result = new ArrayList<>(recent.size() + 1);
+        result.add(summaryMessage);
+        result.addAll(recent);
+        return result;
+    }
+
+    /**
+     * 从最新往前累计，加上已用的token数超过maxTokens就停止，至少保留最新一条
+     */
+    private List<Message> latest(List<Message> messages, int usedTokens) {
+        int total = usedTokens;
+        int start = messages.size();
+        while (start > 0) {
+            total += tokenEstimator.applyAsInt(messages.get(start - 1));
+            if (total > maxTokens && start < messages.size()) {
+                break;
+            }
+            start--;
+        }
+        return start == 0 ? messages : messages.subList(start, messages.size());
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        delegate.clear(conversationId);
+        generations.merge(conversationId, 1L, Long::sum);
+        summaries.remove(conversationId);
+    }
+
+    /**
+     * 等待正在执行的摘要任务结束
+     */
+    @Override
+    public void close() throws Exception {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private void submit(String conversationId, Summary previous, List<Message> messages) {
+        if (!summarizing.add(conversationId)) {
+            return;
+        }
+        long generation = generations.getOrDefault(conversationId, 0L);
+        try {
+            executor.execute(() -> {
+                try {
+                    summarize(conversationId, generation, previous, messages);
+                } catch (Exception e) {
+                    logger.error("summarize chat memory error, conversationId: {}", conversationId, e);
+                } finally {
+                    summarizing.remove(conversationId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            summarizing.remove(conversationId);
+        }
+    }
+
+    private void summarize(String conversationId, long generation, Summary previous, List<Message> messages) {
+        StringBuilder conversation = new StringBuilder();
+        for (Message message : messages) {
+            conversation.append(role(message.getMessageType())).append('：').append(message.getText()).append('\n');
+        }
+        String previousText = Objects.isNull(previous) ? "无" : previous.text();
+        ChatResponse response = chatModel.call(new Prompt(PROMPT.formatted(previousText, conversation), options));
+        String text = Objects.isNull(response) || Objects.isNull(response.getResult()) ? null : response.getResult().getOutput().getText();
+        if (!StringUtils.hasText(text)) {
+            return;
+        }
+        List<String> boundary = new ArrayList<>(BOUNDARY_SIZE);
+        for (Message message : messages.subList(Math.max(0, messages.size() - BOUNDARY_SIZE), messages.size())) {
+            boundary.add(fingerprint(message));
+        }
+        Summary summary = new Summary(text.trim(), boundary);
+        // 期间会话被清除或摘要已被更新时丢弃这次结果
+        Summary current = summaries.compute(conversationId, (key, existing) ->
+                existing == previous && generations.getOrDefault(conversationId, 0L) == generation ? summary : existing);
+        logger.debug("summarize chat memory, conversationId: {}, messages: {}, updated: {}", conversationId, messages.size(), current == summary);
+    }
+
+    private static String role(MessageType messageType) {
+        return switch (messageType) {
+            case USER -> "用户";
+            case ASSISTANT -> "助手";
+            case SYSTEM -> "系统";
+            case TOOL -> "工具";
+        };
+    }
+
+    private static String fingerprint(Message message) {
+        String text = Objects.isNull(message.getText()) ? "" : message.getText();
+        return message.getMessageType().getValue() + ":" + text.length() + ":" + text.hashCode();
+    }
+
+    public static SummarizingChatMemory.Builder builder() {
+        return new SummarizingChatMemory.Builder();
+    }
+
+    /**
+     * @param text     摘要内容
+     * @param boundary 最后几条已摘要消息的指纹
+     */
+    private record Summary(String text, List<String> boundary) {
+
+        /**
+         * 摘要边界之后第一条消息的下标。边界已经不在返回的消息中（被更早的窗口截掉）时，所有消息都是摘要之后的
+         */
+        private int indexAfterBoundary(List<Message> messages) {
+            for (int end = messages.size(); end >= boundary.size(); end--) {
+                boolean matched = true;
+                for (int i = 0; i < boundary.size(); i++) {
+                    if (!boundary.get(i).equals(fingerprint(messages.get(end - boundary.size() + i)))) {
+                        matched = false;
+                        break;
+                    }
+                }
+                if (matched) {
+                    return end;
+                }
+            }
+            return 0;
+        }
+    }
+
+    public static final class Builder {
+
+        private ChatMemory delegate;
+
+        // 生成摘要的模型，建议使用便宜、速度快的模型
+        private ChatModel chatModel;
+
+        private ChatOptions options;
+
+        // 原样保留的最近消息数
+        private int keepRecent = 10;
+
+        // 未摘要的较早消息攒够多少条生成一次摘要
+        private int summarizeBatch = 10;
+
+        // 单次读取的token预算，包括摘要，默认不限制
+        private int maxTokens = Integer.MAX_VALUE;
+
+        private ToIntFunction<Message> tokenEstimator = WindowedChatMemory::estimateTokens;
+
+        public SummarizingChatMemory.Builder delegate(ChatMemory delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        public SummarizingChatMemory.Builder chatModel(ChatModel chatModel) {
+            this.chatModel = chatModel;
+            return this;
+        }
+
+        public SummarizingChatMemory.Builder options(ChatOptions options) {
+            this.options = options;
+            return this;
+        }
+
+        public SummarizingChatMemory.Builder keepRecent(int keepRecent) {
+            this.keepRecent = keepRecent;
+            return this;
+        }
+
+        public SummarizingChatMemory.Builder summarizeBatch(int summarizeBatch) {
+            this.summarizeBatch = summarizeBatch;
+            return this;
+        }
+
+        public SummarizingChatMemory.Builder maxTokens(int maxTokens) {
+            this.maxTokens = maxTokens;
+            return this;
+        }
+
+        public SummarizingChatMemory.Builder tokenEstimator(ToIntFunction<Message> tokenEstimator) {
+            this.tokenEstimator = tokenEstimator;
+            return this;
+        }
+
+        public SummarizingChatMemory build() {
+            return new SummarizingChatMemory(this);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package io.github.future0923.ai.agent.example.chat.memory.support;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 分层的聊天记忆
+ * <p>
+ * 按从快到慢的顺序配置多层ChatMemory（如本地内存、Redis、MySQL），最后一层是持久层，保存全部消息。
+ * 本地内存也作为一层放在最前面，不要在外面再包一层本地缓存，否则大部分读取到不了这里，访问次数统计不到。
+ * <li>每个会话记录当前所在的最快一层，读取从这一层开始，这一层没有数据（被淘汰或过期）时往下一层读取，会话降到下一层
+ * <li>会话在一个统计周期（demoteInterval）内在当前层被读取promoteThreshold次后，把最近promoteMessages条消息复制到上一层，会话升一层
+ * <li>每个统计周期结束时，周期内读取少于demoteThreshold次的会话清除所在层的数据，降一层
+ * <li>写入从持久层开始，依次写入会话所在层及以下的各层
+ * <p>
+ * 上层的淘汰（LRU、过期）同样是降级。会话所在层只记录在本实例，多实例共享同一个会话时以持久层为准。
+ *
+ * @author future0923
+ */
+public class TieredChatMemory implements ChatMemory, AutoCloseable {
+
+    private final List<Tier> tiers;
+
+    private final int promoteThreshold;
+
+    private final int promoteMessages;
+
+    private final int demoteThreshold;
+
+    private final ScheduledExecutorService executor;
+
+    /**
+     * 会话id -> 会话所在层，按访问顺序淘汰，淘汰后从持久层重新开始
+     */
+    private final Map<String, Placement> placements;
+
+    private TieredChatMemory(Builder builder) {
+        Assert.notEmpty(builder.tiers, "tiers cannot be empty");
+        Assert.isTrue(builder.promoteThreshold > 0, "promoteThreshold must be greater than 0");
+        Assert.isTrue(builder.promoteMessages > 0, "promoteMessages must be greater than 0");
+        Assert.isTrue(builder.demoteThreshold >= 0, "demoteThreshold cannot be negative");
+        Assert.isTrue(!builder.demoteInterval.isNegative() && !builder.demoteInterval.isZero(), "demoteInterval must be positive");
+        Assert.isTrue(builder.maxTrackedConversations > 0, "maxTrackedConversations must be greater than 0");
+        this.tiers = List.copyOf(builder.tiers);
+        this.promoteThreshold = builder.promoteThreshold;
+        this.promoteMessages = builder.promoteMessages;
+        this.demoteThreshold = builder.demoteThreshold;
+        int maxTrackedConversations = builder.maxTrackedConversations;
+        this.placements = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Placement> eldest) {
+                return size() > maxTrackedConversations;
+            }
+        });
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("chat-memory-tier-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long interval = builder.demoteInterval.toMillis();
+        this.executor.scheduleWithFixedDelay(this::demote, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        Placement placement = placement(conversationId);
+        synchronized (placement) {
+            for (int level = tiers.size() - 1; level >= placement.level; level--) {
+                tiers.get(level).memory.add(conversationId, messages);
+            }
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        Placement placement = placement(conversationId);
+        synchronized (placement) {
+            placement.reads++;
+            List<Message> messages = List.of();
+            int durable = tiers.size() - 1;
+            for (int level = placement.level; level <= durable; level++) {
+                Tier tier = tiers.get(level);
+                messages = tier.memory.get(conversationId, lastN);
+                if (!messages.isEmpty() || level == durable) {
+                    tier.hits.increment();
+                    if (level != placement.level) {
+                        placement.level = level;
+                        placement.accesses = 0;
+                    }
+                    break;
+                }
+                tier.misses.increment();
+            }
+            if (placement.level > 0 && !messages.isEmpty() && ++placement.accesses >= promoteThreshold) {
+                promote(conversationId, placement);
+            }
+            return messages;
+        }
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        Placement placement = placement(conversationId);
+        synchronized (placement) {
+            for (Tier tier : tiers) {
+                tier.memory.clear(conversationId);
+            }
+            placement.level = tiers.size() - 1;
+            placement.accesses = 0;
+        }
+    }
+
+    /**
+     * 结束一个统计周期：周期内读取少于demoteThreshold次的会话降一层，并重新开始计数。由后台线程每隔demoteInterval执行一次
+     */
+    public void demote() {
+        List<Map.Entry<String, Placement>> entries;
+        synchronized (placements) {
+            entries = new ArrayList<>(placements.entrySet());
+        }
+        int durable = tiers.size() - 1;
+        for (Map.Entry<String, Placement> entry : entries) {
+            Placement placement = entry.getValue();
+            synchronized (placement) {
+                if (placement.level < durable && placement.reads < demoteThreshold) {
+                    Tier tier = tiers.get(placement.level);
+                    // 下面各层一直同步写入，清除这一层即可
+                    tier.memory.clear(entry.getKey());
+                    tier.demotions.increment();
+                    placement.level++;
+                }
+                placement.reads = 0;
+                placement.accesses = 0;
+            }
+        }
+    }
+
+    /**
+     * 各层的命中情况
+     */
+    public List<TierStats> stats() {
+        List<TierStats> stats = new ArrayList<>(tiers.size());
+        for (Tier tier : tiers) {
+            stats.add(new TierStats(tier.name, tier.hits.sum(), tier.misses.sum(), tier.promotions.sum(), tier.demotions.sum()));
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() throws Exception {
+        executor.shutdownNow();
+        for (Tier tier : tiers) {
+            if (tier.memory instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private Placement placement(String conversationId) {
+        return placements.computeIfAbsent(conversationId, key -> new Placement(tiers.size() - 1));
+    }
+
+    /**
+     * 调用方持有placement的锁。先清空上一层可能残留的旧数据再复制，避免重复
+     */
+    private void promote(String conversationId, Placement placement) {
+        List<Message> window = tiers.get(placement.level).memory.get(conversationId, promoteMessages);
+        Tier upper = tiers.get(placement.level - 1);
+        upper.memory.clear(conversationId);
+        upper.memory.add(conversationId, window);
+        upper.promotions.increment();
+        placement.level--;
+        placement.accesses = 0;
+    }
+
+    public static TieredChatMemory.Builder builder() {
+        return new TieredChatMemory.Builder();
+    }
+
+    /**
+     * @param name       层名称
+     * @param hits       在这一层读到的次数
+     * @param misses     这一层没有数据、往下一层读取的次数
+     * @param promotions 升级到这一层的会话数
+     * @param demotions  读取次数太少、从这一层降级的会话数
+     */
+    public record TierStats(String name, long hits, long misses, long promotions, long demotions) {
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private static final class Tier {
+
+        private final String name;
+
+        private final ChatMemory memory;
+
+        private final LongAdder hits = new LongAdder();
+
+        private final LongAdder misses = new LongAdder();
+
+        private final LongAdder promotions = new LongAdder();
+
+        private final LongAdder demotions = new LongAdder();
+
+        private Tier(String name, ChatMemory memory) {
+            this.name = name;
+            this.memory = memory;
+        }
+    }
+
+    /**
+     * 会话所在层，调用方持有该对象的锁
+     */
+    private static final class Placement {
+
+        private int level;
+
+        /**
+         * 本周期在当前层的读取次数，决定升级
+         */
+        private int accesses;
+
+        /**
+         * 本周期的读取次数，决定降级
+         */
+        private int reads;
+
+        private Placement(int level) {
+            this.level = level;
+        }
+    }
+
+    public static final class Builder {
+
+        private final List<Tier> tiers = new ArrayList<>();
+
+        // 一个统计周期内在当前层读取多少次后升一层
+        private int promoteThreshold = 2;
+
+        // 一个统计周期内读取少于多少次降一层，0表示只靠上层自己的淘汰降级
+        private int demoteThreshold = 1;
+
+        // 统计周期
+        private Duration demoteInterval = Duration.ofMinutes(10);
+
+        // 升级时复制到上一层的消息数
+        private int promoteMessages = 100;
+
+        // 本地记录所在层的会话数
+        private int maxTrackedConversations = 10000;
+
+        /**
+         * 按从快到慢的顺序添加，最后添加的是持久层
+         */
+        public TieredChatMemory.Builder tier(String name, ChatMemory memory) {
+            Assert.hasText(name, "name cannot be empty");
+            Assert.notNull(memory, "memory cannot be null");
+            this.tiers.add(new Tier(name, memory));
+            return this;
+        }
+
+        public TieredChatMemory.Builder promoteThreshold(int promoteThreshold) {
+            this.promoteThreshold = promoteThreshold;
+            return this;
+        }
+
+        public TieredChatMemory.Builder promoteMessages(int promoteMessages) {
+            this.promoteMessages = promoteMessages;
+            return this;
+        }
+
+        public TieredChatMemory.Builder demoteThreshold(int demoteThreshold) {
+            this.demoteThreshold = demoteThreshold;
+            return this;
+        }
+
+        public TieredChatMemory.Builder demoteInterval(Duration demoteInterval) {
+            this.demoteInterval = demoteInterval;
+            return this;
+        }
+
+        public TieredChatMemory.Builder maxTrackedConversations(int maxTrackedConversations) {
+            this.maxTrackedConversations = maxTrackedConversations;
+            return this;
+        }
+
+        public TieredChatMemory build() {
+            return new TieredChatMemory(this);
+        }
+    }
+}
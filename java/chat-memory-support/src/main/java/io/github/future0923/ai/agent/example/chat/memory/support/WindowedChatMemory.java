@@ -0,0 +1,246 @@
+package io.github.future0923.ai.agent.example.chat.memory.support;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.util.Assert;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * 带本地热点缓存、按token预算截取的聊天记忆
+ * <p>
+ * 每个会话在本地缓存最近maxMessages条消息：第一次读取时从被代理的ChatMemory加载一次，之后add同时写入存储和缓存，
+ * 读取直接使用缓存，不再每轮重新加载整段历史。get返回的消息从最新往前累计，估算的token数超过maxTokens就停止，
+ * 至少保留最新一条。
+ * <p>
+ * 缓存以本实例的写入为准，多实例共享同一个会话时其它实例的写入要等缓存淘汰后才能读到
+ *
+ * @author future0923
+ */
+public class WindowedChatMemory implements ChatMemory, AutoCloseable {
+
+    private final ChatMemory delegate;
+
+    private final int maxMessages;
+
+    private final int maxTokens;
+
+    private final ToIntFunction<Message> tokenEstimator;
+
+    /**
+     * 会话id -> 最近的消息，按访问顺序淘汰
+     */
+    private final Map<String, Window> windows;
+
+    /**
+     * 直接使用本地缓存的读取次数
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * 从存储加载的读取次数
+     */
+    private final LongAdder loads = new LongAdder();
+
+    private WindowedChatMemory(Builder builder) {
+        Assert.notNull(builder.delegate, "delegate cannot be null");
+        Assert.isTrue(builder.maxMessages > 0, "maxMessages must be greater than 0");
+        Assert.isTrue(builder.maxTokens > 0, "maxTokens must be greater than 0");
+        Assert.isTrue(builder.maxConversations > 0, "maxConversations must be greater than 0");
+        Assert.notNull(builder.tokenEstimator, "tokenEstimator cannot be null");
+        this.delegate = builder.delegate;
+        this.maxMessages = builder.maxMessages;
+        this.maxTokens = builder.maxTokens;
+        this.tokenEstimator = builder.tokenEstimator;
+        int maxConversations = builder.maxConversations;
+        this.windows = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+                return size() > maxConversations;
+            }
+        });
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        Window window = window(conversationId);
+        synchronized (window) {
+            delegate.add(conversationId, messages);
+            // 还没加载过的会话下次读取时从存储加载，已经包含这次写入
+            if (window.loaded) {
+                window.append(messages);
+            }
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        Window window = window(conversationId);
+        synchronized (window) {
+            if (window.loaded) {
+                hits.increment();
+            } else {
+                loads.increment();
+                window.append(delegate.get(conversationId, maxMessages));
+                window.loaded = true;
+            }
+            return window.latest(Math.min(lastN, maxMessages));
+        }
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        Window window = window(conversationId);
+        synchronized (window) {
+            delegate.clear(conversationId);
+            window.clear();
+        }
+    }
+
+    /**
+     * 本地缓存的命中情况，作为分层记忆最上面的一层，从存储加载也就是升级到本地
+     */
+    public TieredChatMemory.TierStats stats(String name) {
+        long loaded = loads.sum();
+        return new TieredChatMemory.TierStats(name, hits.sum(), loaded, loaded, 0);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private Window window(String conversationId) {
+        return windows.computeIfAbsent(conversationId, key -> new Window());
+    }
+
+    /**
+     * 粗略估算token数：中日韩字符按1个token，其它字符按4个字符1个token
+     */
+    public static int estimateTokens(Message message) {
+        String text = message.getText();
+        if (Objects.isNull(text)) {
+            return 0;
+        }
+        int ideographs = 0;
+        int others = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isIdeographic(text.charAt(i))) {
+                ideographs++;
+            } else {
+                others++;
+            }
+        }
+        return ideographs + (others + 3) / 4;
+    }
+
+    public static WindowedChatMemory.Builder builder() {
+        return new WindowedChatMemory.Builder();
+    }
+
+    /**
+     * 单个会话最近的消息及其token数，调用方持有该对象的锁
+     */
+    private final class Window {
+
+        private final Deque<Message> messages = new ArrayDeque<>();
+
+        private final Deque<Integer> tokens = new ArrayDeque<>();
+
+        private boolean loaded;
+
+        private void append(List<Message> newMessages) {
+            for (Message message : newMessages) {
+                messages.addLast(message);
+                tokens.addLast(tokenEstimator.applyAsInt(message));
+                if (messages.size() > maxMessages) {
+                    messages.removeFirst();
+                    tokens.removeFirst();
+                }
+            }
+        }
+
+        private List<Message> latest(int lastN) {
+            int count = 0;
+            int total = 0;
+            Iterator<Integer> iterator = tokens.descendingIterator();
+            while (iterator.hasNext() && count < lastN) {
+                total += iterator.next();
+                if (total > maxTokens && count > 0) {
+                    break;
+                }
+                count++;
+            }
+            List<Message> result = new ArrayList<>(count);
+            Iterator<Message> messageIterator = messages.descendingIterator();
+            for (int i = 0; i < count; i++) {
+                result.add(messageIterator.next());
+            }
+            Collections.reverse(result);
+            return result;
+        }
+
+        private void clear() {
+            messages.clear();
+            tokens.clear();
+            loaded = true;
+        }
+    }
+
+    public static final class Builder {
+
+        private ChatMemory delegate;
+
+        // 单个会话本地缓存的消息数
+        private int maxMessages = 100;
+
+        // 单次读取的token预算
+        private int maxTokens = 4000;
+
+        // 本地缓存的会话数
+        private int maxConversations = 1000;
+
+        private ToIntFunction<Message> tokenEstimator = WindowedChatMemory::estimateTokens;
+
+        public WindowedChatMemory.Builder delegate(ChatMemory delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        public WindowedChatMemory.Builder maxMessages(int maxMessages) {
+            this.maxMessages = maxMessages;
+            return this;
+        }
+
+        public WindowedChatMemory.Builder maxTokens(int maxTokens) {
+            this.maxTokens = maxTokens;
+            return this;
+        }
+
+        public WindowedChatMemory.Builder maxConversations(int maxConversations) {
+            this.maxConversations = maxConversations;
+            return this;
+        }
+
+        public WindowedChatMemory.Builder tokenEstimator(ToIntFunction<Message> tokenEstimator) {
+            this.tokenEstimator = tokenEstimator;
+            return this;
+        }
+
+        public WindowedChatMemory build() {
+            return new WindowedChatMemory(this);
+        }
+    }
+}
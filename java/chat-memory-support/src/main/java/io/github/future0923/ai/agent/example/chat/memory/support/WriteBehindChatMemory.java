@@ -0,0 +1,287 @@
+package io.github.future0923.ai.agent.example.chat.memory.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 延迟批量写入的聊天记忆
+ * <p>
+ * add只把消息放进会话的待写入队列，攒够maxBatchSize条或每隔flushInterval，由后台线程一次性写入被代理的ChatMemory，
+ * 请求线程不再等待数据库写入。
+ * <li>读己之写：get会带上同一会话还未写入的消息
+ * <li>同一会话的写入、读取、清除互斥，不同会话互不影响
+ * <li>写入失败的批次放回队列重试，每个会话最多保留maxPendingMessages条，超出时丢弃最早的消息并计数
+ * <li>close时写入剩余的全部消息，之后的add先写入该会话剩余的消息再直接写入，顺序不变；进程异常退出时未写入的消息会丢失
+ *
+ * @author future0923
+ */
+public class WriteBehindChatMemory implements ChatMemory, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindChatMemory.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ChatMemory delegate;
+
+    private final int maxBatchSize;
+
+    private final int maxPendingMessages;
+
+    /**
+     * 会话id -> 还未写入的消息，只在持有会话的锁时修改
+     */
+    private final Map<String, List<Message>> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder failedFlushes = new LongAdder();
+
+    private final LongAdder droppedMessages = new LongAdder();
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    private final ScheduledExecutorService executor;
+
+    private volatile boolean closed;
+
+    private WriteBehindChatMemory(Builder builder) {
+        Assert.notNull(builder.delegate, "delegate cannot be null");
+        Assert.isTrue(builder.maxBatchSize > 0, "maxBatchSize must be greater than 0");
+        Assert.isTrue(builder.maxPendingMessages >= builder.maxBatchSize, "maxPendingMessages must not be less than maxBatchSize");
+        Assert.isTrue(!builder.flushInterval.isNegative() && !builder.flushInterval.isZero(), "flushInterval must be positive");
+        this.delegate = builder.delegate;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.maxPendingMessages = builder.maxPendingMessages;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("chat-memory-write-behind-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long interval = builder.flushInterval.toMillis();
+        this.executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        int size;
+        ReentrantLock lock = lock(conversationId);
+        lock.lock();
+        try {
+            if (closed) {
+                // 关闭后直接写入，先写入该会话还没写入的消息
+                List<Message> batch = pending.remove(conversationId);
+                if (Objects.nonNull(batch)) {
+                    batch.addAll(messages);
+                }
+                write(conversationId, Objects.isNull(batch) ? messages : batch);
+                return;
+            }
+            size = append(conversationId, messages, false);
+        } finally {
+            lock.unlock();
+        }
+        if (size >= maxBatchSize) {
+            try {
+                executor.execute(() -> flush(conversationId));
+            } catch (RejectedExecutionException e) {
+                // 已经关闭，直接写入
+                flush(conversationId);
+            }
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        ReentrantLock lock = lock(conversationId);
+        lock.lock();
+        try {
+            // 持有锁时没有正在写入的批次，已存储的消息加上待写入的消息就是完整的记录
+            List<Message> stored = delegate.get(conversationId, lastN);
+            List<Message> buffered = buffered(conversationId);
+            if (buffered.isEmpty()) {
+                return stored;
+            }
+            List<Message> messages = new ArrayList<>(stored.size() + buffered.size());
+            messages.addAll(stored);
+            messages.addAll(buffered);
+            return messages.size() > lastN ? messages.subList(messages.size() - lastN, messages.size()) : messages;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        ReentrantLock lock = lock(conversationId);
+        lock.lock();
+        try {
+            pending.remove(conversationId);
+            delegate.clear(conversationId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写入所有会话还未写入的消息
+     */
+    public void flush() {
+        for (String conversationId : pending.keySet()) {
+            flush(conversationId);
+        }
+    }
+
+    /**
+     * 写入指定会话还未写入的消息，失败时放回队列，下次再写
+     */
+    public void flush(String conversationId) {
+        ReentrantLock lock = lock(conversationId);
+        lock.lock();
+        try {
+            List<Message> batch = pending.remove(conversationId);
+            if (Objects.isNull(batch) || batch.isEmpty()) {
+                return;
+            }
+            try {
+                write(conversationId, batch);
+            } catch (RuntimeException e) {
+                logger.error("flush chat memory error, conversationId: {}, size: {}", conversationId, batch.size(), e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写入统计
+     */
+    public WriteBehindStats stats() {
+        long pendingMessages = 0;
+        for (List<Message> list : pending.values()) {
+            pendingMessages += list.size();
+        }
+        return new WriteBehindStats(pendingMessages, failedFlushes.sum(), droppedMessages.sum());
+    }
+
+    /**
+     * 停止后台写入并写入剩余的全部消息，之后的add直接写入
+     */
+    @Override
+    public void close() throws Exception {
+        closed = true;
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("chat memory write-behind executor did not terminate in time");
+        }
+        flush();
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    /**
+     * 持有会话的锁时调用，失败时把这一批放回队列头部再抛出
+     */
+    private void write(String conversationId, List<Message> batch) {
+        try {
+            delegate.add(conversationId, batch);
+        } catch (RuntimeException e) {
+            failedFlushes.increment();
+            append(conversationId, batch, true);
+            throw e;
+        }
+    }
+
+    /**
+     * 持有会话的锁时调用，超过maxPendingMessages时丢弃最早的消息
+     *
+     * @param head 放到队列头部
+     * @return 队列中的消息数
+     */
+    private int append(String conversationId, List<Message> messages, boolean head) {
+        List<Message> list = pending.computeIfAbsent(conversationId, key -> new ArrayList<>());
+        list.addAll(head ? 0 : list.size(), messages);
+        int overflow = list.size() - maxPendingMessages;
+        if (overflow > 0) {
+            list.subList(0, overflow).clear();
+            droppedMessages.add(overflow);
+            logger.warn("chat memory pending queue is full, conversationId: {}, dropped: {}", conversationId, overflow);
+        }
+        return list.size();
+    }
+
+    private List<Message> buffered(String conversationId) {
+        List<Message> buffered = pending.get(conversationId);
+        return Objects.isNull(buffered) ? List.of() : buffered;
+    }
+
+    private ReentrantLock lock(String conversationId) {
+        return locks[(conversationId.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+    }
+
+    public static WriteBehindChatMemory.Builder builder() {
+        return new WriteBehindChatMemory.Builder();
+    }
+
+    public static final class Builder {
+
+        private ChatMemory delegate;
+
+        // 单个会话攒够多少条消息立即写入
+        private int maxBatchSize = 32;
+
+        // 定时写入的间隔
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        // 单个会话最多保留多少条未写入的消息，存储持续不可用时丢弃最早的消息
+        private int maxPendingMessages = 1000;
+
+        public WriteBehindChatMemory.Builder delegate(ChatMemory delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        public WriteBehindChatMemory.Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public WriteBehindChatMemory.Builder flushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        public WriteBehindChatMemory.Builder maxPendingMessages(int maxPendingMessages) {
+            this.maxPendingMessages = maxPendingMessages;
+            return this;
+        }
+
+        public WriteBehindChatMemory build() {
+            return new WriteBehindChatMemory(this);
+        }
+    }
+
+    /**
+     * @param pendingMessages 还未写入的消息数
+     * @param failedFlushes   写入失败的次数
+     * @param droppedMessages 队列已满丢弃的消息数
+     */
+    public record WriteBehindStats(long pendingMessages, long failedFlushes, long droppedMessages) {
+    }
+}
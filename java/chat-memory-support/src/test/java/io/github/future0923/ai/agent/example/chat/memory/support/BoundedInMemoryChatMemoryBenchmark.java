@@ -0,0 +1,117 @@
+package io.github.future0923.ai.agent.example.chat.memory.support;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.InMemoryChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 4个请求线程在{@link #CONVERSATIONS}个会话上聊天的耗时和最后保留的内存：InMemoryChatMemory（改动前） vs BoundedInMemoryChatMemory
+ * <p>
+ * 每轮对话先读最近{@link #LAST_N}条消息再保存一问一答，每个线程使用自己的一段会话id（InMemoryChatMemory同一会话并发写入不安全）。
+ * BoundedInMemoryChatMemory使用默认参数：最多10000个会话，每个会话100条消息
+ * <p>
+ * mvn -Pbenchmark -pl chat-memory-support -am test-compile exec:exec -Dbenchmark.module=chat-memory-support -Dbenchmark=BoundedInMemoryChatMemoryBenchmark
+ *
+ * @author future0923
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(BoundedInMemoryChatMemoryBenchmark.THREADS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BoundedInMemoryChatMemoryBenchmark {
+
+    static final int THREADS = 4;
+
+    private static final int CONVERSATIONS = 100_000;
+
+    private static final int LAST_N = 10;
+
+    private static final List<Message> TURN = List.of(new UserMessage("小米SU7的续航是多少"), new AssistantMessage("CLTC续航800km"));
+
+    private final InMemoryChatMemory unbounded = new InMemoryChatMemory();
+
+    private final BoundedInMemoryChatMemory bounded = BoundedInMemoryChatMemory.builder().build();
+
+    @TearDown
+    public void tearDown() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long retained = retained(unbounded) + retained(bounded);
+        System.out.printf("retained messages: %d, used heap after gc: %d MB%n",
+                retained, (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+    }
+
+    @Benchmark
+    public List<Message> inMemory(Conversations conversations) {
+        return turn(unbounded, conversations.next());
+    }
+
+    @Benchmark
+    public List<Message> boundedInMemory(Conversations conversations) {
+        return turn(bounded, conversations.next());
+    }
+
+    private static List<Message> turn(ChatMemory chatMemory, String conversationId) {
+        List<Message> history = chatMemory.get(conversationId, LAST_N);
+        chatMemory.add(conversationId, TURN);
+        return history;
+    }
+
+    private static long retained(ChatMemory chatMemory) {
+        long retained = 0;
+        for (int i = 0; i < CONVERSATIONS; i++) {
+            retained += chatMemory.get(id(i), Integer.MAX_VALUE).size();
+        }
+        return retained;
+    }
+
+    private static String id(int i) {
+        return "conversation-" + i;
+    }
+
+    /**
+     * 每个线程轮流使用自己那一段会话id
+     */
+    @State(Scope.Thread)
+    public static class Conversations {
+
+        private static final AtomicInteger threads = new AtomicInteger();
+
+        private final String[] ids = new String[CONVERSATIONS / THREADS];
+
+        private int next;
+
+        public Conversations() {
+            int offset = (threads.getAndIncrement() % THREADS) * ids.length;
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = id(offset + i);
+            }
+        }
+
+        private String next() {
+            String id = ids[next];
+            next = (next + 1) % ids.length;
+            return id;
+        }
+    }
+}
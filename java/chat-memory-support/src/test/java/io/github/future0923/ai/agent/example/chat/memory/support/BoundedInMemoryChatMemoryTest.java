@@ -0,0 +1,103 @@
+package io.github.future0923.ai.agent.example.chat.memory.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author future0923
+ */
+public class BoundedInMemoryChatMemoryTest {
+
+    @Test
+    public void keepLatestMessages() {
+        BoundedInMemoryChatMemory memory = BoundedInMemoryChatMemory.builder()
+                .maxMessages(2)
+                .build();
+        memory.add("1", List.of(new UserMessage("1"), new AssistantMessage("2"), new UserMessage("3")));
+        assertEquals(List.of("2", "3"), texts(memory.get("1", 100)));
+        assertEquals(List.of("3"), texts(memory.get("1", 1)));
+        memory.clear("1");
+        assertTrue(memory.get("1", 100).isEmpty());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        BoundedInMemoryChatMemory memory = BoundedInMemoryChatMemory.builder()
+                .maxConversations(2)
+                .concurrencyLevel(1)
+                .build();
+        memory.add("1", List.of(new UserMessage("1")));
+        memory.add("2", List.of(new UserMessage("2")));
+        memory.get("1", 100);
+        memory.add("3", List.of(new UserMessage("3")));
+        assertEquals(2, memory.size());
+        assertEquals(List.of("1"), texts(memory.get("1", 100)));
+        assertTrue(memory.get("2", 100).isEmpty());
+    }
+
+    @Test
+    public void expireIdleConversations() {
+        AtomicLong now = new AtomicLong();
+        BoundedInMemoryChatMemory memory = BoundedInMemoryChatMemory.builder()
+                .ttl(Duration.ofMinutes(10))
+                .concurrencyLevel(1)
+                .ticker(now::get)
+                .build();
+        memory.add("1", List.of(new UserMessage("1")));
+        memory.add("2", List.of(new UserMessage("2")));
+        now.addAndGet(Duration.ofMinutes(6).toNanos());
+        // 读取会续期
+        memory.get("1", 100);
+        now.addAndGet(Duration.ofMinutes(6).toNanos());
+        assertEquals(List.of("1"), texts(memory.get("1", 100)));
+        assertTrue(memory.get("2", 100).isEmpty());
+        now.addAndGet(Duration.ofMinutes(11).toNanos());
+        // 写入时清理过期会话
+        memory.add("3", List.of(new UserMessage("3")));
+        assertEquals(1, memory.size());
+    }
+
+    @Test
+    public void concurrentConversations() throws Exception {
+        BoundedInMemoryChatMemory memory = BoundedInMemoryChatMemory.builder().build();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String conversationId = String.valueOf(i);
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        memory.add(conversationId, List.of(new UserMessage(String.valueOf(j))));
+                        memory.get(conversationId, 10);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(64, memory.size());
+        for (int i = 0; i < 64; i++) {
+            assertEquals(50, memory.get(String.valueOf(i), 100).size());
+        }
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+}
@@ -0,0 +1,162 @@
+package io.github.future0923.ai.agent.example.chat.memory.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author future0923
+ */
+public class SerialConversationAdvisorTest {
+
+    private final SerialConversationAdvisor advisor = new SerialConversationAdvisor();
+
+    private final ChatModel chatModel = mock(ChatModel.class);
+
+    @Test
+    public void sameConversationRunsInOrder() {
+        Sinks.Empty<Void> first = Sinks.empty();
+        AtomicBoolean secondStarted = new AtomicBoolean();
+        advisor.aroundStream(request("1"), request -> first.asMono().thenMany(Flux.just(response()))).subscribe();
+        advisor.aroundStream(request("1"), request -> {
+            secondStarted.set(true);
+            return Flux.just(response());
+        }).subscribe();
+        assertFalse(secondStarted.get());
+        assertEquals(1, advisor.stats().waiting());
+        first.tryEmitEmpty();
+        assertTrue(secondStarted.get());
+        SerialConversationAdvisor.QueueStats stats = advisor.stats();
+        assertEquals(2, stats.turns());
+        assertEquals(1, stats.queuedTurns());
+        assertEquals(0, stats.waiting());
+    }
+
+    @Test
+    public void differentConversationsRunInParallel() {
+        Sinks.Empty<Void> first = Sinks.empty();
+        AtomicBoolean otherStarted = new AtomicBoolean();
+        advisor.aroundStream(request("1"), request -> first.asMono().thenMany(Flux.just(response()))).subscribe();
+        advisor.aroundStream(request("2"), request -> {
+            otherStarted.set(true);
+            return Flux.just(response());
+        }).subscribe();
+        assertTrue(otherStarted.get());
+    }
+
+    @Test
+    public void cancelWhileQueuedKeepsOrder() {
+        Sinks.Empty<Void> first = Sinks.empty();
+        AtomicBoolean secondStarted = new AtomicBoolean();
+        AtomicBoolean thirdStarted = new AtomicBoolean();
+        advisor.aroundStream(request("1"), request -> first.asMono().thenMany(Flux.just(response()))).subscribe();
+        Disposable second = advisor.aroundStream(request("1"), request -> {
+            secondStarted.set(true);
+            return Flux.just(response());
+        }).subscribe();
+        advisor.aroundStream(request("1"), request -> {
+            thirdStarted.set(true);
+            return Flux.just(response());
+        }).subscribe();
+        second.dispose();
+        // 第二轮取消后，第三轮仍然要等第一轮结束
+        assertFalse(thirdStarted.get());
+        first.tryEmitEmpty();
+        assertFalse(secondStarted.get());
+        assertTrue(thirdStarted.get());
+    }
+
+    @Test
+    public void callWaitsForStream() throws Exception {
+        Sinks.Empty<Void> first = Sinks.empty();
+        advisor.aroundStream(request("1"), request -> first.asMono().thenMany(Flux.just(response()))).subscribe();
+        CompletableFuture<AdvisedResponse> call = CompletableFuture.supplyAsync(() -> advisor.aroundCall(request("1"), request -> response()));
+        Thread.sleep(100);
+        assertFalse(call.isDone());
+        first.tryEmitEmpty();
+        assertNotNull(call.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void callFailsAfterMaxWait() {
+        SerialConversationAdvisor advisor = new SerialConversationAdvisor(SerialConversationAdvisor.DEFAULT_ORDER, Duration.ofMillis(100), delay -> {
+        });
+        Sinks.Empty<Void> hung = Sinks.empty();
+        advisor.aroundStream(request("1"), request -> hung.asMono().thenMany(Flux.just(response()))).subscribe();
+        AtomicBoolean called = new AtomicBoolean();
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> advisor.aroundCall(request("1"), request -> {
+            called.set(true);
+            return response();
+        }));
+        assertTrue(e.getMessage().contains("Conversation 1"));
+        assertFalse(called.get());
+        assertEquals(1, advisor.stats().timeouts());
+        assertEquals(0, advisor.stats().waiting());
+        // 前一轮结束后恢复正常
+        hung.tryEmitEmpty();
+        assertNotNull(advisor.aroundCall(request("1"), request -> response()));
+    }
+
+    @Test
+    public void blockingOnNonBlockingThreadIsNotATimeout() {
+        Sinks.Empty<Void> first = Sinks.empty();
+        advisor.aroundStream(request("1"), request -> first.asMono().thenMany(Flux.just(response()))).subscribe();
+        Mono<AdvisedResponse> call = Mono.fromCallable(() -> advisor.aroundCall(request("1"), request -> response()))
+                .subscribeOn(Schedulers.parallel());
+        IllegalStateException e = assertThrows(IllegalStateException.class, call::block);
+        assertTrue(e.getMessage().contains("blocking"), e.getMessage());
+        assertEquals(0, advisor.stats().timeouts());
+        assertEquals(0, advisor.stats().waiting());
+        first.tryEmitEmpty();
+    }
+
+    @Test
+    public void streamFailsAfterMaxWait() {
+        SerialConversationAdvisor advisor = new SerialConversationAdvisor(SerialConversationAdvisor.DEFAULT_ORDER, Duration.ofMillis(100), delay -> {
+        });
+        Sinks.Empty<Void> hung = Sinks.empty();
+        advisor.aroundStream(request("1"), request -> hung.asMono().thenMany(Flux.just(response()))).subscribe();
+        AtomicBoolean started = new AtomicBoolean();
+        Flux<AdvisedResponse> second = advisor.aroundStream(request("1"), request -> {
+            started.set(true);
+            return Flux.just(response());
+        });
+        assertThrows(IllegalStateException.class, second::blockLast);
+        assertFalse(started.get());
+        assertEquals(1, advisor.stats().timeouts());
+    }
+
+    private AdvisedRequest request(String conversationId) {
+        return AdvisedRequest.builder()
+                .chatModel(chatModel)
+                .userText("你好")
+                .adviseContext(Map.of(AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY, conversationId))
+                .build();
+    }
+
+    private static AdvisedResponse response() {
+        return new AdvisedResponse(new ChatResponse(List.of()), Map.of());
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.future0923.ai.agent.example.chat.memory.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.InMemoryChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author future0923
+ */
+public class SummarizingChatMemoryTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final List<String> prompts = new CopyOnWriteArrayList<>();
+
+    /**
+     * 等待release后返回"摘要N"
+     */
+    private final ChatModel chatModel = prompt -> {
+        prompts.add(prompt.getContents());
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new ChatResponse(List.of(new Generation(new AssistantMessage("摘要" + calls.incrementAndGet()))));
+    };
+
+    @Test
+    public void summarizeOlderTurnsOffRequestPath() throws Exception {
+        try (SummarizingChatMemory memory = memory()) {
+            memory.add("1", List.of(new UserMessage("我叫张三"), new AssistantMessage("你好张三"), new UserMessage("我住杭州"), new AssistantMessage("好的")));
+            // 摘要还没生成，返回原始消息
+            assertEquals(List.of("我叫张三", "你好张三", "我住杭州", "好的"), texts(memory.get("1", 100)));
+            release.countDown();
+            waitFor(() -> memory.get("1", 100).size() == 3);
+            List<Message> messages = memory.get("1", 100);
+            assertEquals(MessageType.SYSTEM, messages.get(0).getMessageType());
+            assertTrue(messages.get(0).getText().endsWith("摘要1"));
+            assertEquals(List.of("我住杭州", "好的"), texts(messages.subList(1, 3)));
+        }
+    }
+
+    @Test
+    public void onlyOneSummaryPerConversation() throws Exception {
+        try (SummarizingChatMemory memory = memory()) {
+            memory.add("1", List.of(new UserMessage("1"), new AssistantMessage("2"), new UserMessage("3"), new AssistantMessage("4")));
+            for (int i = 0; i < 10; i++) {
+                memory.get("1", 100);
+            }
+            release.countDown();
+            waitFor(() -> memory.get("1", 100).size() == 3);
+            // 摘要之后只剩最近2条，不再触发
+            memory.get("1", 100);
+            assertEquals(1, calls.get());
+        }
+    }
+
+    @Test
+    public void rollingSummary() throws Exception {
+        release.countDown();
+        try (SummarizingChatMemory memory = memory()) {
+            memory.add("1", List.of(new UserMessage("1"), new AssistantMessage("2"), new UserMessage("3"), new AssistantMessage("4")));
+            memory.get("1", 100);
+            waitFor(() -> memory.get("1", 100).size() == 3);
+            memory.add("1", List.of(new UserMessage("5"), new AssistantMessage("6")));
+            memory.get("1", 100);
+            waitFor(() -> memory.get("1", 100).get(0).getText().endsWith("摘要2"));
+            assertEquals(List.of("5", "6"), texts(memory.get("1", 100).subList(1, 3)));
+        }
+    }
+
+    @Test
+    public void clearDropsSummary() throws Exception {
+        release.countDown();
+        try (SummarizingChatMemory memory = memory()) {
+            memory.add("1", List.of(new UserMessage("1"), new AssistantMessage("2"), new UserMessage("3"), new AssistantMessage("4")));
+            memory.get("1", 100);
+            waitFor(() -> memory.get("1", 100).size() == 3);
+            memory.clear("1");
+            memory.add("1", List.of(new UserMessage("你好")));
+            assertEquals(List.of("你好"), texts(memory.get("1", 100)));
+        }
+    }
+
+    @Test
+    public void tokenBudgetAppliesAfterSummary() throws Exception {
+        release.countDown();
+        // 每条消息1个token，每次最多3个
+        try (SummarizingChatMemory memory = SummarizingChatMemory.builder()
+                .delegate(new InMemoryChatMemory())
+                .chatModel(chatModel)
+                .keepRecent(2)
+                .summarizeBatch(2)
+                .maxTokens(3)
+                .tokenEstimator(message -> 1)
+                .build()) {
+            memory.add("1", List.of(new UserMessage("我叫张三"), new AssistantMessage("你好张三"), new UserMessage("我住杭州"), new AssistantMessage("好的")));
+            // 摘要生成前按预算截取，最早的一条不返回
+            assertEquals(List.of("你好张三", "我住杭州", "好的"), texts(memory.get("1", 100)));
+            waitFor(() -> memory.get("1", 100).get(0).getMessageType() == MessageType.SYSTEM);
+            // 超出预算的消息仍然进入了摘要
+            assertTrue(prompts.get(0).contains("我叫张三"), prompts.get(0));
+            memory.add("1", List.of(new UserMessage("5"), new AssistantMessage("6")));
+            // 摘要占1个token，只剩最近2条
+            List<Message> messages = memory.get("1", 100);
+            assertEquals(MessageType.SYSTEM, messages.get(0).getMessageType());
+            assertEquals(List.of("5", "6"), texts(messages.subList(1, 3)));
+        }
+    }
+
+    private SummarizingChatMemory memory() {
+        return SummarizingChatMemory.builder()
+                .delegate(new InMemoryChatMemory())
+                .chatModel(chatModel)
+                .keepRecent(2)
+                .summarizeBatch(2)
+                .build();
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
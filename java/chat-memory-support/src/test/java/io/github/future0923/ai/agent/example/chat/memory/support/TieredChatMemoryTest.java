@@ -0,0 +1,137 @@
+package io.github.future0923.ai.agent.example.chat.memory.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.InMemoryChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author future0923
+ */
+public class TieredChatMemoryTest {
+
+    private final ChatMemory cache = new InMemoryChatMemory();
+
+    private final ChatMemory store = new InMemoryChatMemory();
+
+    private final TieredChatMemory memory = TieredChatMemory.builder()
+            .tier("redis", cache)
+            .tier("mysql", store)
+            .promoteThreshold(2)
+            .build();
+
+    @Test
+    public void promoteAfterRepeatedReads() {
+        memory.add("1", List.of(new UserMessage("你好"), new AssistantMessage("你好，有什么可以帮你")));
+        // 新会话只写入持久层
+        assertTrue(cache.get("1", 100).isEmpty());
+        memory.get("1", 100);
+        assertTrue(cache.get("1", 100).isEmpty());
+        memory.get("1", 100);
+        assertEquals(List.of("你好", "你好，有什么可以帮你"), texts(cache.get("1", 100)));
+        assertEquals(List.of("你好", "你好，有什么可以帮你"), texts(memory.get("1", 100)));
+        List<TieredChatMemory.TierStats> stats = memory.stats();
+        assertEquals(new TieredChatMemory.TierStats("redis", 1, 0, 1, 0), stats.get(0));
+        assertEquals(new TieredChatMemory.TierStats("mysql", 2, 0, 0, 0), stats.get(1));
+    }
+
+    @Test
+    public void writeThroughPromotedTiers() {
+        memory.add("1", List.of(new UserMessage("1")));
+        memory.get("1", 100);
+        memory.get("1", 100);
+        memory.add("1", List.of(new AssistantMessage("2")));
+        assertEquals(List.of("1", "2"), texts(cache.get("1", 100)));
+        assertEquals(List.of("1", "2"), texts(store.get("1", 100)));
+    }
+
+    @Test
+    public void demoteWhenUpperTierEvicted() {
+        memory.add("1", List.of(new UserMessage("1")));
+        memory.get("1", 100);
+        memory.get("1", 100);
+        // 模拟Redis过期
+        cache.clear("1");
+        assertEquals(List.of("1"), texts(memory.get("1", 100)));
+        assertEquals(1, memory.stats().get(0).misses());
+        memory.add("1", List.of(new AssistantMessage("2")));
+        // 降级后只写入持久层，再次升级时整体复制
+        assertTrue(cache.get("1", 100).isEmpty());
+        memory.get("1", 100);
+        assertEquals(List.of("1", "2"), texts(cache.get("1", 100)));
+    }
+
+    @Test
+    public void demoteRarelyReadConversations() {
+        memory.add("1", List.of(new UserMessage("1")));
+        memory.get("1", 100);
+        memory.get("1", 100);
+        // 本周期读过，保留在Redis
+        memory.demote();
+        assertEquals(List.of("1"), texts(cache.get("1", 100)));
+        // 下一个周期没有读取，降到MySQL
+        memory.demote();
+        assertTrue(cache.get("1", 100).isEmpty());
+        assertEquals(1, memory.stats().get(0).demotions());
+        assertEquals(List.of("1"), texts(memory.get("1", 100)));
+        assertEquals(0, memory.stats().get(0).misses());
+    }
+
+    @Test
+    public void promoteNeedsReadsWithinOnePeriod() {
+        memory.add("1", List.of(new UserMessage("1")));
+        memory.get("1", 100);
+        memory.demote();
+        memory.get("1", 100);
+        // 两次读取不在同一个周期
+        assertTrue(cache.get("1", 100).isEmpty());
+    }
+
+    @Test
+    public void localTierSeesEveryRead() throws Exception {
+        ChatMemory local = BoundedInMemoryChatMemory.builder().build();
+        try (TieredChatMemory memory = TieredChatMemory.builder()
+                .tier("local", local)
+                .tier("redis", cache)
+                .tier("mysql", store)
+                .promoteThreshold(2)
+                .build()) {
+            memory.add("1", List.of(new UserMessage("1")));
+            for (int i = 0; i < 4; i++) {
+                memory.get("1", 100);
+            }
+            // 每次读取都经过分层记忆，两次升到Redis，再两次升到本地
+            assertEquals(List.of("1"), texts(local.get("1", 100)));
+            memory.get("1", 100);
+            List<TieredChatMemory.TierStats> stats = memory.stats();
+            assertEquals(new TieredChatMemory.TierStats("local", 1, 0, 1, 0), stats.get(0));
+            assertEquals(new TieredChatMemory.TierStats("redis", 2, 0, 1, 0), stats.get(1));
+            memory.demote();
+            memory.demote();
+            assertTrue(local.get("1", 100).isEmpty());
+            assertEquals(List.of("1"), texts(cache.get("1", 100)));
+        }
+    }
+
+    @Test
+    public void clearAllTiers() {
+        memory.add("1", List.of(new UserMessage("1")));
+        memory.get("1", 100);
+        memory.get("1", 100);
+        memory.clear("1");
+        assertTrue(memory.get("1", 100).isEmpty());
+        assertTrue(cache.get("1", 100).isEmpty());
+        assertTrue(store.get("1", 100).isEmpty());
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+}
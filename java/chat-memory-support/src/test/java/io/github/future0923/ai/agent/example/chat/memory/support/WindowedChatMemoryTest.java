@@ -0,0 +1,101 @@
+package io.github.future0923.ai.agent.example.chat.memory.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.InMemoryChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author future0923
+ */
+public class WindowedChatMemoryTest {
+
+    @Test
+    public void loadOnceThenWriteThrough() {
+        CountingChatMemory store = new CountingChatMemory();
+        store.add("1", List.of(new UserMessage("你好"), new AssistantMessage("你好，有什么可以帮你")));
+        WindowedChatMemory memory = WindowedChatMemory.builder().delegate(store).build();
+        assertEquals(List.of("你好", "你好，有什么可以帮你"), texts(memory.get("1", 100)));
+        memory.add("1", List.of(new UserMessage("今天天气")));
+        assertEquals(List.of("你好", "你好，有什么可以帮你", "今天天气"), texts(memory.get("1", 100)));
+        assertEquals(List.of("今天天气"), texts(memory.get("1", 1)));
+        // 只在第一次读取时访问存储
+        assertEquals(1, store.gets.get());
+        assertEquals(3, store.get("1", 100).size());
+    }
+
+    @Test
+    public void trimByTokenBudget() {
+        WindowedChatMemory memory = WindowedChatMemory.builder()
+                .delegate(new InMemoryChatMemory())
+                .maxTokens(10)
+                .build();
+        memory.add("1", List.of(new UserMessage("一二三四五六"), new AssistantMessage("七八九十"), new UserMessage("甲乙丙丁")));
+        // 从最新往前：4 + 4 = 8，再加6超过预算
+        assertEquals(List.of("七八九十", "甲乙丙丁"), texts(memory.get("1", 100)));
+    }
+
+    @Test
+    public void keepLatestEvenIfOverBudget() {
+        WindowedChatMemory memory = WindowedChatMemory.builder()
+                .delegate(new InMemoryChatMemory())
+                .maxTokens(2)
+                .build();
+        memory.add("1", List.of(new UserMessage("你好"), new AssistantMessage("有什么可以帮你")));
+        assertEquals(List.of("有什么可以帮你"), texts(memory.get("1", 100)));
+    }
+
+    @Test
+    public void boundedWindowAndClear() {
+        WindowedChatMemory memory = WindowedChatMemory.builder()
+                .delegate(new InMemoryChatMemory())
+                .maxMessages(2)
+                .build();
+        memory.get("1", 100);
+        memory.add("1", List.of(new UserMessage("1"), new AssistantMessage("2"), new UserMessage("3")));
+        assertEquals(List.of("2", "3"), texts(memory.get("1", 100)));
+        memory.clear("1");
+        assertTrue(memory.get("1", 100).isEmpty());
+    }
+
+    @Test
+    public void estimateTokens() {
+        assertEquals(2, WindowedChatMemory.estimateTokens(new UserMessage("你好")));
+        assertEquals(3, WindowedChatMemory.estimateTokens(new UserMessage("hello world")));
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+
+    private static class CountingChatMemory implements ChatMemory {
+
+        private final ChatMemory memory = new InMemoryChatMemory();
+
+        private final AtomicInteger gets = new AtomicInteger();
+
+        @Override
+        public void add(String conversationId, List<Message> messages) {
+            memory.add(conversationId, messages);
+        }
+
+        @Override
+        public List<Message> get(String conversationId, int lastN) {
+            gets.incrementAndGet();
+            return memory.get(conversationId, lastN);
+        }
+
+        @Override
+        public void clear(String conversationId) {
+            memory.clear(conversationId);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.github.future0923.ai.agent.example.chat.memory.support;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 4个请求线程保存一轮对话的耗时：直接写入数据库（改动前） vs 延迟批量写入
+ * <p>
+ * 数据库用每次写入固定{@link #WRITE_LATENCY_MICROS}微秒的ChatMemory代替，参数与ChatMemoryConfig一致。
+ * 每次请求先消耗{@link #REQUEST_WORK}个CPU单位代替请求的其它处理，避免后台线程写不过来；减去baseline就是保存的耗时
+ * <p>
+ * mvn -Pbenchmark -pl chat-memory-support -am test-compile exec:exec -Dbenchmark.module=chat-memory-support -Dbenchmark=WriteBehindChatMemoryBenchmark
+ *
+ * @author future0923
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WriteBehindChatMemoryBenchmark {
+
+    /**
+     * 一次MySQL写入的往返耗时
+     */
+    private static final long WRITE_LATENCY_MICROS = 1000;
+
+    private static final long REQUEST_WORK = 20_000;
+
+    private final List<Message> turn = List.of(new UserMessage("小米SU7的续航是多少"), new AssistantMessage("CLTC续航800km"));
+
+    private SlowChatMemory store;
+
+    private WriteBehindChatMemory writeBehind;
+
+    @Setup
+    public void setup() {
+        store = new SlowChatMemory();
+        writeBehind = WriteBehindChatMemory.builder()
+                .delegate(store)
+                .maxBatchSize(32)
+                .maxPendingMessages(1000)
+                .flushInterval(Duration.ofSeconds(1))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        writeBehind.close();
+        System.out.println("write-behind " + writeBehind.stats() + ", delegate writes: " + store.writes.sum());
+    }
+
+    @Benchmark
+    public void baseline() {
+        Blackhole.consumeCPU(REQUEST_WORK);
+    }
+
+    @Benchmark
+    public void direct(Conversation conversation) {
+        Blackhole.consumeCPU(REQUEST_WORK);
+        store.add(conversation.id, turn);
+    }
+
+    @Benchmark
+    public void writeBehind(Conversation conversation) {
+        Blackhole.consumeCPU(REQUEST_WORK);
+        writeBehind.add(conversation.id, turn);
+    }
+
+    /**
+     * 每个请求线程一个会话
+     */
+    @State(Scope.Thread)
+    public static class Conversation {
+
+        private final String id = UUID.randomUUID().toString();
+    }
+
+    /**
+     * 每次写入等待固定时间，不保存消息
+     */
+    private static class SlowChatMemory implements ChatMemory {
+
+        private final LongAdder writes = new LongAdder();
+
+        @Override
+        public void add(String conversationId, List<Message> messages) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(WRITE_LATENCY_MICROS));
+            writes.increment();
+        }
+
+        @Override
+        public List<Message> get(String conversationId, int lastN) {
+            return List.of();
+        }
+
+        @Override
+        public void clear(String conversationId) {
+        }
+    }
+}
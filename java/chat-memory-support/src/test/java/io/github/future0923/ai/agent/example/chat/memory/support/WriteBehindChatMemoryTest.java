@@ -0,0 +1,234 @@
+package io.github.future0923.ai.agent.example.chat.memory.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.InMemoryChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author future0923
+ */
+public class WriteBehindChatMemoryTest {
+
+    @Test
+    public void readYourWrites() throws Exception {
+        RecordingChatMemory store = new RecordingChatMemory();
+        try (WriteBehindChatMemory memory = WriteBehindChatMemory.builder()
+                .delegate(store)
+                .flushInterval(Duration.ofHours(1))
+                .build()) {
+            memory.add("1", List.of(new UserMessage("你好"), new AssistantMessage("你好，有什么可以帮你")));
+            assertTrue(store.batches.isEmpty());
+            memory.flush("1");
+            memory.add("1", List.of(new UserMessage("今天天气")));
+            // 已写入的两条加上未写入的一条
+            assertEquals(List.of("你好", "你好，有什么可以帮你", "今天天气"), texts(memory.get("1", 10)));
+            assertEquals(List.of("你好，有什么可以帮你", "今天天气"), texts(memory.get("1", 2)));
+            assertTrue(memory.get("2", 10).isEmpty());
+        }
+    }
+
+    @Test
+    public void flushOnBatchSize() throws Exception {
+        RecordingChatMemory store = new RecordingChatMemory();
+        try (WriteBehindChatMemory memory = WriteBehindChatMemory.builder()
+                .delegate(store)
+                .maxBatchSize(4)
+                .flushInterval(Duration.ofHours(1))
+                .build()) {
+            memory.add("1", List.of(new UserMessage("1"), new AssistantMessage("2")));
+            memory.add("1", List.of(new UserMessage("3"), new AssistantMessage("4")));
+            waitFor(() -> !store.batches.isEmpty());
+            // 两次add合并成一次写入
+            assertEquals(List.of(4), store.batches);
+        }
+    }
+
+    @Test
+    public void flushOnInterval() throws Exception {
+        RecordingChatMemory store = new RecordingChatMemory();
+        try (WriteBehindChatMemory memory = WriteBehindChatMemory.builder()
+                .delegate(store)
+                .flushInterval(Duration.ofMillis(50))
+                .build()) {
+            memory.add("1", List.of(new UserMessage("你好")));
+            waitFor(() -> !store.batches.isEmpty());
+            assertEquals(List.of("你好"), texts(store.get("1", 10)));
+        }
+    }
+
+    @Test
+    public void flushOnClose() throws Exception {
+        RecordingChatMemory store = new RecordingChatMemory();
+        WriteBehindChatMemory memory = WriteBehindChatMemory.builder()
+                .delegate(store)
+                .flushInterval(Duration.ofHours(1))
+                .build();
+        memory.add("1", List.of(new UserMessage("你好")));
+        memory.add("2", List.of(new UserMessage("在吗")));
+        memory.close();
+        assertEquals(List.of("你好"), texts(store.get("1", 10)));
+        assertEquals(List.of("在吗"), texts(store.get("2", 10)));
+    }
+
+    @Test
+    public void retryFailedBatchInOrder() throws Exception {
+        RecordingChatMemory store = new RecordingChatMemory();
+        try (WriteBehindChatMemory memory = WriteBehindChatMemory.builder()
+                .delegate(store)
+                .flushInterval(Duration.ofHours(1))
+                .build()) {
+            memory.add("1", List.of(new UserMessage("1")));
+            store.fail.set(true);
+            memory.flush("1");
+            store.fail.set(false);
+            memory.add("1", List.of(new UserMessage("2")));
+            memory.flush("1");
+            assertEquals(List.of("1", "2"), texts(store.get("1", 10)));
+        }
+    }
+
+    @Test
+    public void addAfterCloseWritesPendingFirst() throws Exception {
+        RecordingChatMemory store = new RecordingChatMemory();
+        WriteBehindChatMemory memory = WriteBehindChatMemory.builder()
+                .delegate(store)
+                .flushInterval(Duration.ofHours(1))
+                .build();
+        memory.add("1", List.of(new UserMessage("1")));
+        // 关闭时写入失败，消息留在队列中
+        store.fail.set(true);
+        memory.close();
+        store.fail.set(false);
+        memory.add("1", List.of(new AssistantMessage("2")));
+        assertEquals(List.of("1", "2"), texts(store.get("1", 10)));
+        assertEquals(List.of(2), store.batches);
+        assertEquals(0, memory.stats().pendingMessages());
+    }
+
+    @Test
+    public void failedBatchesAreCapped() throws Exception {
+        RecordingChatMemory store = new RecordingChatMemory();
+        try (WriteBehindChatMemory memory = WriteBehindChatMemory.builder()
+                .delegate(store)
+                .maxBatchSize(2)
+                .maxPendingMessages(3)
+                .flushInterval(Duration.ofHours(1))
+                .build()) {
+            store.fail.set(true);
+            for (int i = 1; i <= 5; i++) {
+                memory.add("1", List.of(new UserMessage(String.valueOf(i))));
+                memory.flush("1");
+            }
+            WriteBehindChatMemory.WriteBehindStats stats = memory.stats();
+            assertEquals(3, stats.pendingMessages());
+            assertEquals(2, stats.droppedMessages());
+            // 攒够两条时后台也会写入，失败次数不少于手动写入的次数
+            assertTrue(stats.failedFlushes() >= 5, "failedFlushes: " + stats.failedFlushes());
+            // 丢弃最早的消息，保留最近的
+            assertEquals(List.of("3", "4", "5"), texts(memory.get("1", 10)));
+            store.fail.set(false);
+            memory.flush("1");
+            assertEquals(List.of("3", "4", "5"), texts(store.get("1", 10)));
+        }
+    }
+
+    @Test
+    public void concurrentAddsKeepEveryMessageInOrder() throws Exception {
+        RecordingChatMemory store = new RecordingChatMemory();
+        WriteBehindChatMemory memory = WriteBehindChatMemory.builder()
+                .delegate(store)
+                .maxBatchSize(3)
+                .flushInterval(Duration.ofMillis(1))
+                .build();
+        int threads = 4;
+        int perThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String prefix = t + "-";
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        memory.add("1", List.of(new UserMessage(prefix + i)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        memory.close();
+        List<String> texts = texts(store.get("1", Integer.MAX_VALUE));
+        assertEquals(threads * perThread, texts.size());
+        // 每个线程自己的消息保持add的顺序
+        for (int t = 0; t < threads; t++) {
+            String prefix = t + "-";
+            List<String> own = texts.stream().filter(text -> text.startsWith(prefix)).toList();
+            for (int i = 0; i < perThread; i++) {
+                assertEquals(prefix + i, own.get(i));
+            }
+        }
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /**
+     * 记录每次写入的条数，fail为true时写入失败
+     */
+    private static class RecordingChatMemory implements ChatMemory {
+
+        private final ChatMemory memory = new InMemoryChatMemory();
+
+        private final List<Integer> batches = new CopyOnWriteArrayList<>();
+
+        private final AtomicBoolean fail = new AtomicBoolean();
+
+        @Override
+        public void add(String conversationId, List<Message> messages) {
+            if (fail.get()) {
+                throw new IllegalStateException("store unavailable");
+            }
+            batches.add(messages.size());
+            memory.add(conversationId, new ArrayList<>(messages));
+        }
+
+        @Override
+        public List<Message> get(String conversationId, int lastN) {
+            return memory.get(conversationId, lastN);
+        }
+
+        @Override
+        public void clear(String conversationId) {
+            memory.clear(conversationId);
+        }
+    }
+}
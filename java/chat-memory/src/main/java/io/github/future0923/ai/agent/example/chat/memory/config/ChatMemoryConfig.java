@@ -1,12 +1,22 @@
 package io.github.future0923.ai.agent.example.chat.memory.config;
 
+import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
 import com.alibaba.cloud.ai.memory.jdbc.MysqlChatMemory;
-import com.alibaba.cloud.ai.memory.redis.RedisChatMemory;
+import io.github.future0923.ai.agent.example.chat.memory.redis.CompactRedisChatMemory;
+import io.github.future0923.ai.agent.example.chat.memory.support.BoundedInMemoryChatMemory;
+import io.github.future0923.ai.agent.example.chat.memory.support.SerialConversationAdvisor;
+import io.github.future0923.ai.agent.example.chat.memory.support.SummarizingChatMemory;
+import io.github.future0923.ai.agent.example.chat.memory.support.TieredChatMemory;
+import io.github.future0923.ai.agent.example.chat.memory.support.WindowedChatMemory;
+import io.github.future0923.ai.agent.example.chat.memory.support.WriteBehindChatMemory;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.InMemoryChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.List;
+
 /**
  * 聊天记忆配置
  *
@@ -15,27 +25,116 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class ChatMemoryConfig {
 
+    private final ChatModel chatModel;
+
+    private final ChatMemoryProperties properties;
+
+    public ChatMemoryConfig(ChatModel chatModel, ChatMemoryProperties properties) {
+        this.chatModel = chatModel;
+        this.properties = properties;
+    }
+
     /**
-     * 内存聊天记忆
+     * 同一会话的请求依次执行，不同会话并行，排队超过max-queue-wait直接失败
      */
     @Bean
-    public ChatMemory memoryChatMemory() {
-        return new InMemoryChatMemory();
+    public SerialConversationAdvisor serialConversationAdvisor() {
+        return new SerialConversationAdvisor(SerialConversationAdvisor.DEFAULT_ORDER, properties.getMaxQueueWait(), delay -> {
+        });
+    }
+
+    @Bean
+    public ChatMemoryStats chatMemoryStats() {
+        return new ChatMemoryStats();
     }
 
     /**
-     * MySQL聊天记忆
+     * 按spring.chat.memory.backend选择存储，没有选中的存储不会创建连接。
+     * 最近100条消息缓存在本地，只在会话第一次读取时访问存储；tiered时本地内存是分层记忆的第一层，按访问频率升降级。
+     * 最近10条消息原样保留，更早的消息每攒够10条由qwen-turbo在后台合并成摘要，摘要加上之后的消息每次最多带4000个token
      */
     @Bean
-    public ChatMemory mysqlChatMemory() {
-        return new MysqlChatMemory("root", "123456", "jdbc:mysql://127.0.0.1:3306/chat_memory");
+    public ChatMemory chatMemory(ChatMemoryStats chatMemoryStats) {
+        ChatMemory local = switch (properties.getBackend()) {
+            case MEMORY -> windowed(BoundedInMemoryChatMemory.builder().build(), chatMemoryStats);
+            case MYSQL -> windowed(mysqlChatMemory(chatMemoryStats), chatMemoryStats);
+            case REDIS -> windowed(redisChatMemory(), chatMemoryStats);
+            case TIERED -> tieredChatMemory(chatMemoryStats);
+        };
+        return SummarizingChatMemory.builder()
+                .delegate(local)
+                .chatModel(chatModel)
+                .options(DashScopeChatOptions.builder()
+                        .withModel("qwen-turbo")
+                        .build())
+                .keepRecent(10)
+                .summarizeBatch(10)
+                .maxTokens(4000)
+                .build();
     }
 
     /**
-     * Redis聊天记忆
+     * 本地缓存每个会话最近100条消息
      */
-    @Bean
-    public ChatMemory redisChatMemory() {
-        return new RedisChatMemory("127.0.0.1", 6379, "123456");
+    private ChatMemory windowed(ChatMemory store, ChatMemoryStats chatMemoryStats) {
+        WindowedChatMemory windowed = WindowedChatMemory.builder()
+                .delegate(store)
+                .maxMessages(100)
+                // 不在这里按token截取，否则较早的消息还没摘要就被截掉了
+                .maxTokens(Integer.MAX_VALUE)
+                .build();
+        chatMemoryStats.register(() -> List.of(windowed.stats("local")));
+        return windowed;
+    }
+
+    /**
+     * 本地内存、Redis、MySQL三层，本地内存作为第一层，每次读取都经过分层记忆，访问次数才准确
+     */
+    private ChatMemory tieredChatMemory(ChatMemoryStats chatMemoryStats) {
+        ChatMemoryProperties.Tiered tiered = properties.getTiered();
+        TieredChatMemory memory = TieredChatMemory.builder()
+                .tier("local", BoundedInMemoryChatMemory.builder()
+                        .maxMessages(100)
+                        .maxConversations(1000)
+                        .build())
+                .tier("redis", redisChatMemory())
+                .tier("mysql", mysqlChatMemory(chatMemoryStats))
+                .promoteThreshold(tiered.getPromoteThreshold())
+                .promoteMessages(properties.getRedis().getMaxMessages())
+                .demoteThreshold(tiered.getDemoteThreshold())
+                .demoteInterval(tiered.getInterval())
+                .build();
+        chatMemoryStats.register(memory::stats);
+        return memory;
+    }
+
+    /**
+     * MySQL聊天记忆，消息先放入队列，每个会话攒够32条或每隔1秒批量写入MySQL，关闭应用时写入剩余消息。
+     * MySQL不可用时每个会话最多保留1000条未写入的消息
+     */
+    private ChatMemory mysqlChatMemory(ChatMemoryStats chatMemoryStats) {
+        ChatMemoryProperties.Mysql mysql = properties.getMysql();
+        WriteBehindChatMemory writeBehind = WriteBehindChatMemory.builder()
+                .delegate(new MysqlChatMemory(mysql.getUsername(), mysql.getPassword(), mysql.getUrl()))
+                .maxBatchSize(32)
+                .maxPendingMessages(1000)
+                .flushInterval(Duration.ofSeconds(1))
+                .build();
+        chatMemoryStats.register(writeBehind);
+        return writeBehind;
+    }
+
+    /**
+     * Redis聊天记忆，每个会话只保留最近的二进制编码的消息，一段时间没有读写自动过期
+     */
+    private ChatMemory redisChatMemory() {
+        ChatMemoryProperties.Redis redis = properties.getRedis();
+        return CompactRedisChatMemory.builder()
+                .host(redis.getHost())
+                .port(redis.getPort())
+                .password(redis.getPassword())
+                .maxMessages(redis.getMaxMessages())
+                .ttl(redis.getTtl())
+                .build();
     }
 }
@@ -0,0 +1,227 @@
+package io.github.future0923.ai.agent.example.chat.memory.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * @author future0923
+ */
+@Configuration
+@ConfigurationProperties(prefix = "spring.chat.memory")
+public class ChatMemoryProperties {
+
+    /**
+     * 使用的存储，只创建用到的存储连接
+     */
+    private Backend backend = Backend.MEMORY;
+
+    private Mysql mysql = new Mysql();
+
+    private Redis redis = new Redis();
+
+    private Tiered tiered = new Tiered();
+
+    /**
+     * 同一会话排队等待前一轮结束的最长时间，超时后这一轮直接失败
+     */
+    private Duration maxQueueWait = Duration.ofMinutes(2);
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public void setBackend(Backend backend) {
+        this.backend = backend;
+    }
+
+    public Mysql getMysql() {
+        return mysql;
+    }
+
+    public void setMysql(Mysql mysql) {
+        this.mysql = mysql;
+    }
+
+    public Redis getRedis() {
+        return redis;
+    }
+
+    public void setRedis(Redis redis) {
+        this.redis = redis;
+    }
+
+    public Tiered getTiered() {
+        return tiered;
+    }
+
+    public void setTiered(Tiered tiered) {
+        this.tiered = tiered;
+    }
+
+    public Duration getMaxQueueWait() {
+        return maxQueueWait;
+    }
+
+    public void setMaxQueueWait(Duration maxQueueWait) {
+        this.maxQueueWait = maxQueueWait;
+    }
+
+    public enum Backend {
+
+        /**
+         * 内存
+         */
+        MEMORY,
+
+        /**
+         * MySQL
+         */
+        MYSQL,
+
+        /**
+         * Redis
+         */
+        REDIS,
+
+        /**
+         * 本地内存和Redis缓存常用会话，MySQL持久化
+         */
+        TIERED
+    }
+
+    public static class Mysql {
+
+        private String url = "jdbc:mysql://127.0.0.1:3306/chat_memory";
+
+        private String username = "root";
+
+        private String password;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+
+    public static class Redis {
+
+        private String host = "127.0.0.1";
+
+        private int port = 6379;
+
+        private String password;
+
+        /**
+         * 每个会话保留的消息数
+         */
+        private int maxMessages = 100;
+
+        /**
+         * 会话多久没有读写后过期
+         */
+        private Duration ttl = Duration.ofDays(7);
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getMaxMessages() {
+            return maxMessages;
+        }
+
+        public void setMaxMessages(int maxMessages) {
+            this.maxMessages = maxMessages;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+    }
+
+    public static class Tiered {
+
+        /**
+         * 会话在一个统计周期内在当前层（MySQL、Redis）被读取多少次后复制到上一层（Redis、本地内存）
+         */
+        private int promoteThreshold = 2;
+
+        /**
+         * 会话在一个统计周期内读取少于多少次从本地内存、Redis降一层，0表示只靠过期和淘汰降级
+         */
+        private int demoteThreshold = 1;
+
+        /**
+         * 统计周期
+         */
+        private Duration interval = Duration.ofMinutes(10);
+
+        public int getPromoteThreshold() {
+            return promoteThreshold;
+        }
+
+        public void setPromoteThreshold(int promoteThreshold) {
+            this.promoteThreshold = promoteThreshold;
+        }
+
+        public int getDemoteThreshold() {
+            return demoteThreshold;
+        }
+
+        public void setDemoteThreshold(int demoteThreshold) {
+            this.demoteThreshold = demoteThreshold;
+        }
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.github.future0923.ai.agent.example.chat.memory.config;
+
+import io.github.future0923.ai.agent.example.chat.memory.support.TieredChatMemory;
+import io.github.future0923.ai.agent.example.chat.memory.support.WriteBehindChatMemory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * 聊天记忆各层的命中情况（从快到慢排列）和延迟写入的情况
+ *
+ * @author future0923
+ */
+public class ChatMemoryStats {
+
+    private final List<Supplier<List<TieredChatMemory.TierStats>>> sources = new CopyOnWriteArrayList<>();
+
+    private final List<WriteBehindChatMemory> writeBehinds = new CopyOnWriteArrayList<>();
+
+    void register(Supplier<List<TieredChatMemory.TierStats>> source) {
+        sources.add(source);
+    }
+
+    void register(WriteBehindChatMemory writeBehind) {
+        writeBehinds.add(writeBehind);
+    }
+
+    public List<TieredChatMemory.TierStats> tiers() {
+        List<TieredChatMemory.TierStats> tiers = new ArrayList<>();
+        for (Supplier<List<TieredChatMemory.TierStats>> source : sources) {
+            tiers.addAll(source.get());
+        }
+        return tiers;
+    }
+
+    public List<WriteBehindChatMemory.WriteBehindStats> writeBehind() {
+        return writeBehinds.stream()
+                .map(WriteBehindChatMemory::stats)
+                .toList();
+    }
+}
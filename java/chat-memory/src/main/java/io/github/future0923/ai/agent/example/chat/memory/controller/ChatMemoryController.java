@@ -1,17 +1,22 @@
 package io.github.future0923.ai.agent.example.chat.memory.controller;
 
+import io.github.future0923.ai.agent.example.chat.memory.config.ChatMemoryStats;
+import io.github.future0923.ai.agent.example.chat.memory.support.SerialConversationAdvisor;
+import io.github.future0923.ai.agent.example.chat.memory.support.TieredChatMemory;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * @author future0923
  */
@@ -19,24 +24,26 @@ import reactor.core.publisher.Flux;
 @RequestMapping("/chatMemory")
 public class ChatMemoryController {
 
-    private final ChatMemory memoryChatMemory;
+    private final ChatMemory chatMemory;
 
-    private final ChatMemory mysqlChatMemory;
+    private final ChatMemoryStats chatMemoryStats;
 
-    private final ChatMemory redisChatMemory;
+    private final SerialConversationAdvisor serialConversationAdvisor;
 
     private final ChatClient chatClient;
 
-
-    public ChatMemoryController(@Qualifier("memoryChatMemory") ChatMemory memoryChatMemory, @Qualifier("mysqlChatMemory") ChatMemory mysqlChatMemory, @Qualifier("redisChatMemory") ChatMemory redisChatMemory, ChatClient.Builder builder) {
-        this.memoryChatMemory = memoryChatMemory;
-        this.mysqlChatMemory = mysqlChatMemory;
-        this.redisChatMemory = redisChatMemory;
+    public ChatMemoryController(ChatMemory chatMemory, ChatMemoryStats chatMemoryStats, SerialConversationAdvisor serialConversationAdvisor, ChatClient.Builder builder) {
+        this.chatMemory = chatMemory;
+        this.chatMemoryStats = chatMemoryStats;
+        this.serialConversationAdvisor = serialConversationAdvisor;
         this.chatClient = builder.build();
     }
 
-    @GetMapping("/memory")
-    public Flux<String> memoryChatMemory(
+    /**
+     * 使用spring.chat.memory.backend配置的聊天记忆
+     */
+    @GetMapping("/chat")
+    public Flux<String> chat(
             @RequestParam("prompt") String prompt,
             @RequestParam("chatId") String chatId,
             HttpServletResponse response
@@ -44,7 +51,8 @@ public class ChatMemoryController {
         response.setCharacterEncoding("UTF-8");
         return chatClient.prompt()
                 .user(prompt)
-                .advisors(new MessageChatMemoryAdvisor(memoryChatMemory))
+                .advisors(serialConversationAdvisor)
+                .advisors(new MessageChatMemoryAdvisor(chatMemory))
                 .advisors(advisorSpec -> advisorSpec
                         .param(AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
                         .param(AbstractChatMemoryAdvisor.CHAT_MEMORY_RETRIEVE_SIZE_KEY, 100))
@@ -52,38 +60,28 @@ public class ChatMemoryController {
                 .content();
     }
 
-    @GetMapping("/mysql")
-    public Flux<String> mysqlChatMemory(
-            @RequestParam("prompt") String prompt,
-            @RequestParam("chatId") String chatId,
-            HttpServletResponse response
-    ) {
-        response.setCharacterEncoding("UTF-8");
-        return chatClient.prompt()
-                .user(prompt)
-                .advisors(new MessageChatMemoryAdvisor(mysqlChatMemory))
-                .advisors(advisorSpec -> advisorSpec
-                        .param(AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
-                        .param(AbstractChatMemoryAdvisor.CHAT_MEMORY_RETRIEVE_SIZE_KEY, 100))
-                .stream()
-                .content();
+    /**
+     * 各层的命中情况、延迟写入的情况和同一会话的排队情况
+     */
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tiers", chatMemoryStats.tiers().stream()
+                .map(this::stats)
+                .toList());
+        stats.put("writeBehind", chatMemoryStats.writeBehind());
+        stats.put("queue", serialConversationAdvisor.stats());
+        return stats;
     }
 
-    @GetMapping("/redis")
-    public Flux<String> redisChatMemory(
-            @RequestParam("prompt") String prompt,
-            @RequestParam("chatId") String chatId,
-            HttpServletResponse response
-    ) {
-        response.setCharacterEncoding("UTF-8");
-        return chatClient.prompt()
-                .user(prompt)
-                .advisors(new MessageChatMemoryAdvisor(redisChatMemory))
-                .advisors(advisorSpec -> advisorSpec
-                        .param(AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
-                        .param(AbstractChatMemoryAdvisor.CHAT_MEMORY_RETRIEVE_SIZE_KEY, 100))
-                .stream()
-                .content();
+    private Map<String, Object> stats(TieredChatMemory.TierStats tier) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", tier.name());
+        stats.put("hits", tier.hits());
+        stats.put("misses", tier.misses());
+        stats.put("hitRate", tier.hitRate());
+        stats.put("promotions", tier.promotions());
+        stats.put("demotions", tier.demotions());
+        return stats;
     }
-
 }
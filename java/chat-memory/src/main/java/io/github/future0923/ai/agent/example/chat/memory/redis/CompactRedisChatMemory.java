@@ -0,0 +1,200 @@
+package io.github.future0923.ai.agent.example.chat.memory.redis;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 紧凑存储的Redis聊天记忆
+ * <p>
+ * 每个会话是一个Redis List，元素是二进制编码的消息（较大的消息会压缩），只保留最近maxMessages条。
+ * <li>add用一次pipeline完成RPUSH、LTRIM、EXPIRE
+ * <li>get用一次pipeline完成LRANGE和续期
+ * <li>会话ttl时间内没有读写自动过期
+ *
+ * @author future0923
+ */
+public class CompactRedisChatMemory implements ChatMemory, AutoCloseable {
+
+    private final JedisPool jedisPool;
+
+    private final boolean closePool;
+
+    private final String keyPrefix;
+
+    private final int maxMessages;
+
+    private final long ttlSeconds;
+
+    private final MessageCodec codec;
+
+    private CompactRedisChatMemory(Builder builder) {
+        Assert.hasText(builder.keyPrefix, "keyPrefix cannot be empty");
+        Assert.isTrue(builder.maxMessages > 0, "maxMessages must be greater than 0");
+        Assert.isTrue(builder.ttl.toSeconds() > 0, "ttl must be at least 1 second");
+        Assert.isTrue(builder.compressThreshold >= 0, "compressThreshold cannot be negative");
+        if (builder.jedisPool != null) {
+            this.jedisPool = builder.jedisPool;
+            this.closePool = false;
+        } else {
+            Assert.hasText(builder.host, "host cannot be empty");
+            this.jedisPool = new JedisPool(new JedisPoolConfig(), builder.host, builder.port, (int) builder.timeout.toMillis(), builder.password);
+            this.closePool = true;
+        }
+        this.keyPrefix = builder.keyPrefix;
+        this.maxMessages = builder.maxMessages;
+        this.ttlSeconds = builder.ttl.toSeconds();
+        this.codec = new MessageCodec(builder.compressThreshold);
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        if (CollectionUtils.isEmpty(messages)) {
+            return;
+        }
+        byte[][] values = new byte[messages.size()][];
+        for (int i = 0; i < messages.size(); i++) {
+            values[i] = codec.encode(messages.get(i));
+        }
+        byte[] key = key(conversationId);
+        try (Jedis jedis = jedisPool.getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            pipeline.rpush(key, values);
+            pipeline.ltrim(key, -maxMessages, -1);
+            pipeline.expire(key, ttlSeconds);
+            pipeline.sync();
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        if (lastN <= 0) {
+            return List.of();
+        }
+        byte[] key = key(conversationId);
+        Response<List<byte[]>> response;
+        try (Jedis jedis = jedisPool.getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            response = pipeline.lrange(key, -Math.min(lastN, maxMessages), -1);
+            pipeline.expire(key, ttlSeconds);
+            pipeline.sync();
+        }
+        List<byte[]> values = response.get();
+        List<Message> messages = new ArrayList<>(values.size());
+        for (byte[] value : values) {
+            messages.add(codec.decode(value));
+        }
+        return messages;
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(key(conversationId));
+        }
+    }
+
+    /**
+     * 只关闭自己创建的连接池
+     */
+    @Override
+    public void close() {
+        codec.close();
+        if (closePool) {
+            jedisPool.close();
+        }
+    }
+
+    private byte[] key(String conversationId) {
+        return (keyPrefix + conversationId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static CompactRedisChatMemory.Builder builder() {
+        return new CompactRedisChatMemory.Builder();
+    }
+
+    public static final class Builder {
+
+        private String host = "127.0.0.1";
+
+        private int port = 6379;
+
+        private String password;
+
+        private Duration timeout = Duration.ofSeconds(2);
+
+        // 外部传入的连接池，设置后忽略host、port、password、timeout
+        private JedisPool jedisPool;
+
+        private String keyPrefix = "chat_memory:";
+
+        // 每个会话保留的消息数
+        private int maxMessages = 100;
+
+        // 会话多久没有读写后过期
+        private Duration ttl = Duration.ofDays(7);
+
+        // 编码后超过多少字节压缩
+        private int compressThreshold = 512;
+
+        public CompactRedisChatMemory.Builder host(String host) {
+            this.host = host;
+            return this;
+        }
+
+        public CompactRedisChatMemory.Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public CompactRedisChatMemory.Builder password(String password) {
+            this.password = password;
+            return this;
+        }
+
+        public CompactRedisChatMemory.Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public CompactRedisChatMemory.Builder jedisPool(JedisPool jedisPool) {
+            this.jedisPool = jedisPool;
+            return this;
+        }
+
+        public CompactRedisChatMemory.Builder keyPrefix(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+            return this;
+        }
+
+        public CompactRedisChatMemory.Builder maxMessages(int maxMessages) {
+            this.maxMessages = maxMessages;
+            return this;
+        }
+
+        public CompactRedisChatMemory.Builder ttl(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        public CompactRedisChatMemory.Builder compressThreshold(int compressThreshold) {
+            this.compressThreshold = compressThreshold;
+            return this;
+        }
+
+        public CompactRedisChatMemory build() {
+            return new CompactRedisChatMemory(this);
+        }
+    }
+}
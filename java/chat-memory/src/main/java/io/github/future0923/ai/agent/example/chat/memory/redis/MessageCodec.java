@@ -0,0 +1,426 @@
+package io.github.future0923.ai.agent.example.chat.memory.redis;
+
+import org.springframework.ai.chat.messages.AbstractMessage;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 聊天消息的二进制编码
+ * <p>
+ * 格式：版本(1字节) + 标记(1字节) + 内容。内容依次是消息类型、文本、元数据，助手消息再加工具调用，工具消息再加工具返回。
+ * 内容超过compressThreshold字节时用Deflater压缩，标记的最低位为1，此时内容前多写4字节的原始长度；压缩后不比原内容小时按未压缩保存。
+ * Deflater、Inflater创建时要分配几百KB的本地内存，编解码时从池中取用，池中最多保留CPU核数个。
+ * <li>消息类型保存{@link MessageType#getValue()}，不受枚举顺序变化影响
+ * <li>元数据的值带类型保存：字符串、整数、长整数、浮点数、布尔值及由它们组成的List、Map，其它类型按String.valueOf保存；
+ * 值为null的元数据和由消息类型决定的messageType不保存
+ * <li>解码时先检查长度，长度为负数、超过剩余字节数或超过{@link #MAX_PAYLOAD_SIZE}时抛出IllegalArgumentException，不按长度分配内存
+ *
+ * @author future0923
+ */
+class MessageCodec {
+
+    private static final byte VERSION = 3;
+
+    private static final byte COMPRESSED = 1;
+
+    /**
+     * 版本(1字节) + 标记(1字节)
+     */
+    private static final int HEADER_SIZE = 2;
+
+    /**
+     * 压缩时多写的原始长度(4字节)
+     */
+    private static final int LENGTH_SIZE = 4;
+
+    /**
+     * 单条消息内容最大16MB
+     */
+    static final int MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * 元数据的值最多嵌套的层数
+     */
+    private static final int MAX_DEPTH = 16;
+
+    private static final byte TYPE_NULL = 0;
+
+    private static final byte TYPE_STRING = 1;
+
+    private static final byte TYPE_INT = 2;
+
+    private static final byte TYPE_LONG = 3;
+
+    private static final byte TYPE_DOUBLE = 4;
+
+    private static final byte TYPE_FLOAT = 5;
+
+    private static final byte TYPE_BOOLEAN = 6;
+
+    private static final byte TYPE_LIST = 7;
+
+    private static final byte TYPE_MAP = 8;
+
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    private final int compressThreshold;
+
+    private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    MessageCodec(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
+    byte[] encode(Message message) {
+        // 头部和内容写在同一个数组里，不压缩时只复制一次
+        Buffer bytes = new Buffer(HEADER_SIZE + estimate(message));
+        bytes.write(VERSION);
+        bytes.write(0);
+        payload(message, bytes);
+        int length = bytes.size() - HEADER_SIZE;
+        if (length > MAX_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("chat message too large: " + length + " bytes");
+        }
+        if (length > compressThreshold) {
+            byte[] compressed = compress(bytes.buffer(), length);
+            if (Objects.nonNull(compressed)) {
+                return compressed;
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 释放池中的Deflater、Inflater
+     */
+    void close() {
+        for (Deflater deflater = deflaters.poll(); Objects.nonNull(deflater); deflater = deflaters.poll()) {
+            deflater.end();
+        }
+        for (Inflater inflater = inflaters.poll(); Objects.nonNull(inflater); inflater = inflaters.poll()) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 压缩buffer中头部之后的length字节，压缩后不比原内容小时返回null
+     */
+    private byte[] compress(byte[] buffer, int length) {
+        byte[] compressed = new byte[HEADER_SIZE + LENGTH_SIZE + length];
+        compressed[0] = VERSION;
+        compressed[1] = COMPRESSED;
+        compressed[2] = (byte) (length >>> 24);
+        compressed[3] = (byte) (length >>> 16);
+        compressed[4] = (byte) (length >>> 8);
+        compressed[5] = (byte) length;
+        Deflater deflater = Objects.requireNonNullElseGet(deflaters.poll(), () -> new Deflater(Deflater.BEST_SPEED));
+        try {
+            deflater.setInput(buffer, HEADER_SIZE, length);
+            deflater.finish();
+            int size = HEADER_SIZE + LENGTH_SIZE;
+            while (!deflater.finished() && size < compressed.length) {
+                size += deflater.deflate(compressed, size, compressed.length - size);
+            }
+            return deflater.finished() ? Arrays.copyOf(compressed, size) : null;
+        } finally {
+            deflater.reset();
+            if (!deflaters.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    Message decode(byte[] bytes) {
+        if (bytes.length < HEADER_SIZE || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("unsupported chat message encoding");
+        }
+        if ((bytes[1] & COMPRESSED) == 0) {
+            return read(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+        }
+        if (bytes.length < HEADER_SIZE + LENGTH_SIZE) {
+            throw new IllegalArgumentException("truncated chat message");
+        }
+        int length = (bytes[2] & 0xFF) << 24 | (bytes[3] & 0xFF) << 16 | (bytes[4] & 0xFF) << 8 | bytes[5] & 0xFF;
+        if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("invalid chat message length: " + length);
+        }
+        byte[] payload = new byte[length];
+        Inflater inflater = Objects.requireNonNullElseGet(inflaters.poll(), Inflater::new);
+        try {
+            inflater.setInput(bytes, HEADER_SIZE + LENGTH_SIZE, bytes.length - HEADER_SIZE - LENGTH_SIZE);
+            int offset = 0;
+            while (offset < length && !inflater.finished()) {
+                int inflated = inflater.inflate(payload, offset, length - offset);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("truncated chat message");
+                }
+                offset += inflated;
+            }
+            if (offset < length) {
+                throw new IllegalArgumentException("truncated chat message");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("corrupted chat message", e);
+        } finally {
+            inflater.reset();
+            if (!inflaters.offer(inflater)) {
+                inflater.end();
+            }
+        }
+        return read(payload, 0, payload.length);
+    }
+
+    private static Message read(byte[] bytes, int offset, int length) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, length));
+            Message message = read(in);
+            if (in.available() > 0) {
+                throw new IllegalArgumentException("trailing bytes in chat message");
+            }
+            return message;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("corrupted chat message", e);
+        }
+    }
+
+    /**
+     * 内容的预估字节数，文本按每个字符3字节（UTF-8）计算，避免写入时反复扩容
+     */
+    private static int estimate(Message message) {
+        String text = message.getText();
+        return 256 + (Objects.isNull(text) ? 0 : Math.min(text.length(), MAX_PAYLOAD_SIZE / 3) * 3);
+    }
+
+    private static void payload(Message message, ByteArrayOutputStream bytes) {
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            MessageType type = message.getMessageType();
+            writeString(out, type.getValue());
+            writeString(out, message.getText());
+            Map<String, Object> metadata = new LinkedHashMap<>();
+            if (Objects.nonNull(message.getMetadata())) {
+                message.getMetadata().forEach((key, value) -> {
+                    if (Objects.nonNull(value) && !AbstractMessage.MESSAGE_TYPE.equals(key)) {
+                        metadata.put(key, value);
+                    }
+                });
+            }
+            out.writeInt(metadata.size());
+            for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+                writeString(out, entry.getKey());
+                writeValue(out, entry.getValue(), 0);
+            }
+            if (message instanceof AssistantMessage assistantMessage) {
+                List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+                out.writeInt(toolCalls.size());
+                for (AssistantMessage.ToolCall toolCall : toolCalls) {
+                    writeString(out, toolCall.id());
+                    writeString(out, toolCall.type());
+                    writeString(out, toolCall.name());
+                    writeString(out, toolCall.arguments());
+                }
+            } else if (message instanceof ToolResponseMessage toolResponseMessage) {
+                List<ToolResponseMessage.ToolResponse> responses = toolResponseMessage.getResponses();
+                out.writeInt(responses.size());
+                for (ToolResponseMessage.ToolResponse response : responses) {
+                    writeString(out, response.id());
+                    writeString(out, response.name());
+                    writeString(out, response.responseData());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Message read(DataInputStream in) throws IOException {
+        MessageType type = MessageType.fromValue(readString(in));
+        String text = readString(in);
+        int size = readCount(in);
+        Map<String, Object> metadata = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            Object value = readValue(in, 0);
+            if (Objects.nonNull(value)) {
+                metadata.put(key, value);
+            }
+        }
+        return switch (type) {
+            case USER -> new UserMessage(text, List.of(), metadata);
+            case SYSTEM -> {
+                // SystemMessage没有带元数据的构造方法，getMetadata返回的是可修改的副本
+                SystemMessage systemMessage = new SystemMessage(text);
+                systemMessage.getMetadata().putAll(metadata);
+                yield systemMessage;
+            }
+            case ASSISTANT -> {
+                int count = readCount(in);
+                List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    toolCalls.add(new AssistantMessage.ToolCall(readString(in), readString(in), readString(in), readString(in)));
+                }
+                yield new AssistantMessage(text, metadata, toolCalls);
+            }
+            case TOOL -> {
+                int count = readCount(in);
+                List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    responses.add(new ToolResponseMessage.ToolResponse(readString(in), readString(in), readString(in)));
+                }
+                yield new ToolResponseMessage(responses, metadata);
+            }
+        };
+    }
+
+    /**
+     * 长度(4字节，-1表示null) + UTF-8内容
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (Objects.isNull(value)) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > in.available()) {
+            throw new IllegalArgumentException("invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 元素个数，每个元素至少占1字节，超过剩余字节数的一定是损坏的数据
+     */
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > in.available()) {
+            throw new IllegalArgumentException("invalid count: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * 类型(1字节) + 值
+     */
+    private static void writeValue(DataOutputStream out, Object value, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("metadata nested too deep");
+        }
+        if (Objects.isNull(value)) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof Integer number) {
+            out.writeByte(TYPE_INT);
+            out.writeInt(number);
+        } else if (value instanceof Long number) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong(number);
+        } else if (value instanceof Double number) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble(number);
+        } else if (value instanceof Float number) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat(number);
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean(bool);
+        } else if (value instanceof List<?> list) {
+            out.writeByte(TYPE_LIST);
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element, depth + 1);
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            out.writeByte(TYPE_MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(out, String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue(), depth + 1);
+            }
+        } else {
+            out.writeByte(TYPE_STRING);
+            writeString(out, value instanceof String string ? string : String.valueOf(value));
+        }
+    }
+
+    private static Object readValue(DataInputStream in, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("metadata nested too deep");
+        }
+        byte type = in.readByte();
+        return switch (type) {
+            case TYPE_NULL -> null;
+            case TYPE_STRING -> readString(in);
+            case TYPE_INT -> in.readInt();
+            case TYPE_LONG -> in.readLong();
+            case TYPE_DOUBLE -> in.readDouble();
+            case TYPE_FLOAT -> in.readFloat();
+            case TYPE_BOOLEAN -> in.readBoolean();
+            case TYPE_LIST -> {
+                int count = readCount(in);
+                List<Object> list = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    list.add(readValue(in, depth + 1));
+                }
+                yield list;
+            }
+            case TYPE_MAP -> {
+                int count = readCount(in);
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < count; i++) {
+                    map.put(readString(in), readValue(in, depth + 1));
+                }
+                yield map;
+            }
+            default -> throw new IllegalArgumentException("unknown metadata type: " + type);
+        };
+    }
+
+    /**
+     * 可以直接读取内部数组的ByteArrayOutputStream，压缩时不用再复制一次
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        private Buffer(int size) {
+            super(size);
+        }
+
+        private byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package io.github.future0923.ai.agent.example.chat.memory.redis;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编码、解码一个会话最近{@link #WINDOW}条消息的耗时、分配和保存的字节数：每条消息一个JSON（改动前） vs MessageCodec
+ * <p>
+ * 用户消息几十个字，回答几百到一千多字，回答的元数据与DashScope返回的一致
+ * <p>
+ * mvn -Pbenchmark -pl chat-memory -am test-compile exec:exec -Dbenchmark.module=chat-memory -Dbenchmark=MessageCodecBenchmark
+ *
+ * @author future0923
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MessageCodecBenchmark {
+
+    /**
+     * 与CompactRedisChatMemory的maxMessages一致
+     */
+    private static final int WINDOW = 100;
+
+    private static final String[] SENTENCES = {
+            "您预订的航班可以在起飞前24小时免费改签一次。",
+            "退票手续费按照舱位等级收取，经济舱为票面价的10%。",
+            "如果航班因天气原因取消，可以全额退款或免费改签到最近的航班。",
+            "行李额度为托运20公斤，手提行李不超过7公斤。",
+            "请在起飞前45分钟完成值机，国际航班需要提前2小时。",
+            "会员积分可以在下单时抵扣票价，每100积分抵扣1元。",
+            "儿童票按成人票价的50%收取，婴儿不占座位按10%收取。",
+            "已为您查询到预订号为",
+            "的订单，出发地北京，目的地上海，日期",
+            "如需修改乘机人姓名，请联系人工客服办理。"
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final MessageCodec codec = new MessageCodec(512);
+
+    private List<Message> messages;
+
+    private List<byte[]> json;
+
+    private List<byte[]> encoded;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(0);
+        messages = new ArrayList<>(WINDOW);
+        for (int i = 0; i < WINDOW / 2; i++) {
+            messages.add(new UserMessage("帮我查一下预订号" + (100 + i) + "的退改规则", List.of(), Map.of("chatId", "1")));
+            StringBuilder text = new StringBuilder();
+            int length = 300 + random.nextInt(1200);
+            while (text.length() < length) {
+                text.append(SENTENCES[random.nextInt(SENTENCES.length)]);
+                text.append(random.nextInt(1000));
+            }
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("id", "chatcmpl-" + Long.toHexString(random.nextLong()));
+            metadata.put("role", "ASSISTANT");
+            metadata.put("finishReason", "STOP");
+            metadata.put("reasoningContent", "");
+            messages.add(new AssistantMessage(text.toString(), metadata));
+        }
+        json = json();
+        encoded = codec();
+        System.out.printf("stored bytes per window: json %d, codec %d%n", size(json), size(encoded));
+    }
+
+    @Benchmark
+    public List<byte[]> json() throws IOException {
+        List<byte[]> bytes = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            bytes.add(objectMapper.writeValueAsBytes(message));
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public List<byte[]> codec() {
+        List<byte[]> bytes = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            bytes.add(codec.encode(message));
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public List<Message> fromJson() throws IOException {
+        List<Message> decoded = new ArrayList<>(json.size());
+        for (byte[] bytes : json) {
+            decoded.add(fromJson(bytes));
+        }
+        return decoded;
+    }
+
+    @Benchmark
+    public List<Message> fromCodec() {
+        List<Message> decoded = new ArrayList<>(encoded.size());
+        for (byte[] bytes : encoded) {
+            decoded.add(codec.decode(bytes));
+        }
+        return decoded;
+    }
+
+    /**
+     * 按messageType还原消息，改动前每条消息就是Jackson序列化的JSON
+     */
+    private Message fromJson(byte[] bytes) throws IOException {
+        JsonNode node = objectMapper.readTree(bytes);
+        String text = node.path("text").asText();
+        Map<String, Object> metadata = objectMapper.convertValue(node.path("metadata"), new TypeReference<>() {
+        });
+        return switch (node.path("messageType").asText()) {
+            case "USER" -> new UserMessage(text, List.of(), metadata);
+            case "ASSISTANT" -> new AssistantMessage(text, metadata);
+            default -> throw new IllegalArgumentException("unknown message type: " + node.path("messageType"));
+        };
+    }
+
+    private static long size(List<byte[]> values) {
+        long size = 0;
+        for (byte[] value : values) {
+            size += value.length;
+        }
+        return size;
+    }
+}
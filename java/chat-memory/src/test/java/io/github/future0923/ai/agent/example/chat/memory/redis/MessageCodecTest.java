@@ -0,0 +1,231 @@
+package io.github.future0923.ai.agent.example.chat.memory.redis;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AbstractMessage;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author future0923
+ */
+public class MessageCodecTest {
+
+    private final MessageCodec codec = new MessageCodec(512);
+
+    @Test
+    public void userMessageUncompressed() {
+        byte[] bytes = codec.encode(new UserMessage("你好", List.of(), Map.of("chatId", "1")));
+        assertEquals(0, bytes[1]);
+        Message message = codec.decode(bytes);
+        assertInstanceOf(UserMessage.class, message);
+        assertEquals("你好", message.getText());
+        assertEquals("1", message.getMetadata().get("chatId"));
+    }
+
+    @Test
+    public void assistantMessageCompressed() {
+        String text = "机票退改规则".repeat(500);
+        byte[] bytes = codec.encode(new AssistantMessage(text, Map.of("finishReason", "STOP")));
+        assertEquals(1, bytes[1]);
+        assertTrue(bytes.length < text.getBytes(StandardCharsets.UTF_8).length);
+        AssistantMessage message = assertInstanceOf(AssistantMessage.class, codec.decode(bytes));
+        assertEquals(text, message.getText());
+        assertEquals("STOP", message.getMetadata().get("finishReason"));
+    }
+
+    @Test
+    public void notSmallerAfterCompressionStaysUncompressed() {
+        MessageCodec alwaysCompress = new MessageCodec(0);
+        byte[] bytes = alwaysCompress.encode(new UserMessage("你好"));
+        assertEquals(0, bytes[1]);
+        assertEquals("你好", alwaysCompress.decode(bytes).getText());
+    }
+
+    @Test
+    public void reuseDeflaterAndInflater() {
+        for (int i = 0; i < 10; i++) {
+            String text = ("第" + i + "次改签").repeat(200 + i);
+            byte[] bytes = codec.encode(new AssistantMessage(text));
+            assertEquals(1, bytes[1]);
+            assertEquals(text, codec.decode(bytes).getText());
+        }
+        // 解码失败后放回池中的Inflater还能继续使用
+        byte[] bytes = codec.encode(new AssistantMessage("机票退改规则".repeat(500)));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(Arrays.copyOf(bytes, bytes.length / 2)));
+        assertEquals("机票退改规则".repeat(500), codec.decode(bytes).getText());
+        codec.close();
+        assertEquals("机票退改规则".repeat(500), codec.decode(bytes).getText());
+    }
+
+    @Test
+    public void toolCalls() {
+        List<AssistantMessage.ToolCall> toolCalls = List.of(
+                new AssistantMessage.ToolCall("call-1", "function", "getUserBookings", "{\"username\":\"张三\"}"),
+                new AssistantMessage.ToolCall("call-2", "function", "bookingsInfo", null)
+        );
+        AssistantMessage message = assertInstanceOf(AssistantMessage.class, roundTrip(new AssistantMessage("", Map.of(), toolCalls)));
+        assertEquals(toolCalls, message.getToolCalls());
+
+        List<ToolResponseMessage.ToolResponse> responses = List.of(new ToolResponseMessage.ToolResponse("call-1", "getUserBookings", "[]"));
+        ToolResponseMessage response = assertInstanceOf(ToolResponseMessage.class, roundTrip(new ToolResponseMessage(responses, Map.of("k", "v"))));
+        assertEquals(responses, response.getResponses());
+        assertEquals("v", response.getMetadata().get("k"));
+    }
+
+    @Test
+    public void nullTextAndMetadataValues() {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("empty", null);
+        metadata.put("count", 3);
+        Message message = roundTrip(new AssistantMessage(null, metadata));
+        assertNull(message.getText());
+        assertFalse(message.getMetadata().containsKey("empty"));
+        assertEquals(3, message.getMetadata().get("count"));
+    }
+
+    @Test
+    public void metadataKeepsValueTypes() {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("int", 3);
+        metadata.put("long", 1L << 40);
+        metadata.put("double", 0.5);
+        metadata.put("float", 1.5f);
+        metadata.put("boolean", true);
+        metadata.put("string", "STOP");
+        metadata.put("list", List.of(1, "a", false));
+        metadata.put("map", Map.of("promptTokens", 10, "nested", Map.of("k", 2L)));
+        metadata.put("enum", MessageType.TOOL);
+        Map<String, Object> decoded = roundTrip(new AssistantMessage("你好", metadata)).getMetadata();
+        assertEquals(3, decoded.get("int"));
+        assertEquals(1L << 40, decoded.get("long"));
+        assertEquals(0.5, decoded.get("double"));
+        assertEquals(1.5f, decoded.get("float"));
+        assertEquals(true, decoded.get("boolean"));
+        assertEquals("STOP", decoded.get("string"));
+        assertEquals(List.of(1, "a", false), decoded.get("list"));
+        assertEquals(Map.of("promptTokens", 10, "nested", Map.of("k", 2L)), decoded.get("map"));
+        // 其它类型按字符串保存
+        assertEquals("TOOL", decoded.get("enum"));
+        // messageType由消息类型决定
+        assertEquals(MessageType.ASSISTANT, decoded.get(AbstractMessage.MESSAGE_TYPE));
+    }
+
+    @Test
+    public void systemMessage() {
+        SystemMessage systemMessage = new SystemMessage("你是航空公司聊天小助手");
+        systemMessage.getMetadata().put("promptVersion", 2);
+        Message message = roundTrip(systemMessage);
+        assertInstanceOf(SystemMessage.class, message);
+        assertEquals(MessageType.SYSTEM, message.getMessageType());
+        assertEquals("你是航空公司聊天小助手", message.getText());
+        assertEquals(2, message.getMetadata().get("promptVersion"));
+        assertEquals(MessageType.SYSTEM, message.getMetadata().get(AbstractMessage.MESSAGE_TYPE));
+    }
+
+    @Test
+    public void rejectUnknownEncoding() {
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(new byte[]{9, 0}));
+        // 之前的版本不再支持
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(new byte[]{2, 0}));
+        byte[] bytes = codec.encode(new UserMessage("你好"));
+        bytes[3] = 127;
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(bytes));
+    }
+
+    @Test
+    public void rejectShortHeader() {
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(new byte[]{3}));
+        // 压缩标记后缺少原始长度
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(new byte[]{3, 1, 0, 0}));
+    }
+
+    @Test
+    public void rejectInvalidCompressedLength() {
+        byte[] bytes = codec.encode(new AssistantMessage("机票退改规则".repeat(500)));
+        // 负数
+        byte[] negative = bytes.clone();
+        negative[2] = (byte) 0x80;
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(negative));
+        // 超过上限，不会按这个长度分配内存
+        byte[] huge = bytes.clone();
+        huge[2] = 0x7F;
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(huge));
+        // 比实际解压出的内容长
+        byte[] longer = bytes.clone();
+        longer[4] = (byte) (longer[4] + 1);
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(longer));
+        // 压缩数据被截断
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length / 2);
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(truncated));
+    }
+
+    @Test
+    public void rejectInvalidLengthsInPayload() throws Exception {
+        // 字符串长度超过剩余字节数
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(payload(out -> out.writeInt(Integer.MAX_VALUE))));
+        // 字符串长度为-1以外的负数
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(payload(out -> out.writeInt(-2))));
+        // 元数据个数为负数或超过剩余字节数
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(payload(out -> {
+            writeString(out, "user");
+            writeString(out, "你好");
+            out.writeInt(-1);
+        })));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(payload(out -> {
+            writeString(out, "user");
+            writeString(out, "你好");
+            out.writeInt(Integer.MAX_VALUE);
+        })));
+        // 多余的字节
+        byte[] bytes = codec.encode(new UserMessage("你好"));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(Arrays.copyOf(bytes, bytes.length + 1)));
+    }
+
+    /**
+     * 未压缩的消息，内容由writer写入
+     */
+    private static byte[] payload(PayloadWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(3);
+        out.writeByte(0);
+        writer.write(out);
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private interface PayloadWriter {
+
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private Message roundTrip(Message message) {
+        return codec.decode(codec.encode(message));
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.future0923.ai.agent.example.document.ranker;
+
+import com.alibaba.cloud.ai.dashscope.rerank.DashScopeRerankOptions;
+import com.alibaba.cloud.ai.document.DocumentWithScore;
+import com.alibaba.cloud.ai.model.RerankModel;
+import com.alibaba.cloud.ai.model.RerankRequest;
+import com.alibaba.cloud.ai.model.RerankResponse;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.postretrieval.ranking.DocumentRanker;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * DocumentRanker文档重排序，按文档id建立索引后一次遍历完成重排，并把重排分数写入Document.score
+ * <p>
+ * rerankModel调用失败时直接抛出异常，由调用方决定降级方式
+ *
+ * @author future0923
+ */
+public class DashScopeDocumentRanker implements DocumentRanker {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashScopeDocumentRanker.class);
+
+    private final RerankModel rerankModel;
+
+    public DashScopeDocumentRanker(RerankModel rerankModel) {
+        this.rerankModel = rerankModel;
+    }
+
+    @NotNull
+    @Override
+    public List<Document> rank(@NotNull Query query, @NotNull List<Document> documents) {
+        if (CollectionUtils.isEmpty(documents) || !StringUtils.hasText(query.text())) {
+            return new ArrayList<>();
+        }
+        // The caller controls the number of documents
+        DashScopeRerankOptions rerankOptions = DashScopeRerankOptions.builder()
+                .withTopN(documents.size())
+                .build();
+        // The assembly parameter calls rerankModel
+        RerankResponse rerankResp = rerankModel.call(new RerankRequest(query.text(), documents, rerankOptions));
+        return reorder(documents, rerankResp.getResults());
+    }
+
+    /**
+     * 按重排结果的顺序返回原始文档，重排结果中不存在的id会被忽略
+     */
+    static List<Document> reorder(List<Document> documents, List<DocumentWithScore> results) {
+        Map<String, Document> documentsById = new HashMap<>((int) (documents.size() / 0.75f) + 1);
+        for (Document document : documents) {
+            // 与原先findFirst一致，id重复时取第一个
+            documentsById.putIfAbsent(document.getId(), document);
+        }
+        List<Document> reorderDocs = new ArrayList<>(results.size());
+        for (DocumentWithScore result : results) {
+            Document document = documentsById.get(result.getOutput().getId());
+            if (Objects.isNull(document)) {
+                logger.debug("DashScopeDocumentRanker#rank() unknown outputDocs id: {}", result.getOutput().getId());
+                continue;
+            }
+            reorderDocs.add(Objects.isNull(result.getScore()) ? document : document.mutate().score(result.getScore()).build());
+        }
+        return reorderDocs;
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.future0923.ai.agent.example.document.ranker;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.postretrieval.ranking.DocumentRanker;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 对冲重排序：在executor上调用远程重排序，并在延迟预算内等待结果，超时、失败时改用本地重排序的结果
+ *
+ * @author future0923
+ */
+public class HedgedDocumentRanker implements DocumentRanker {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgedDocumentRanker.class);
+
+    private final DocumentRanker primary;
+
+    private final DocumentRanker fallback;
+
+    private final Duration latencyBudget;
+
+    private final Executor executor;
+
+    /**
+     * @param primary       远程重排序，如 {@link DashScopeDocumentRanker}
+     * @param fallback      本地重排序，如 {@link LexicalDocumentRanker}
+     * @param latencyBudget 等待远程重排序的最长时间
+     * @param executor      执行远程重排序的线程池
+     */
+    public HedgedDocumentRanker(DocumentRanker primary, DocumentRanker fallback, Duration latencyBudget, Executor executor) {
+        this.primary = primary;
+        this.fallback = fallback;
+        this.latencyBudget = latencyBudget;
+        this.executor = executor;
+    }
+
+    @NotNull
+    @Override
+    public List<Document> rank(@NotNull Query query, @NotNull List<Document> documents) {
+        CompletableFuture<List<Document>> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> primary.rank(query, documents), executor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("remote ranker rejected, use fallback ranker");
+            return fallback.rank(query, documents);
+        }
+        try {
+            return future.get(latencyBudget.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 远程调用不会被中断，结果直接丢弃
+            future.cancel(true);
+            logger.warn("remote ranker exceeded {}ms, use fallback ranker", latencyBudget.toMillis());
+        } catch (ExecutionException e) {
+            logger.error("remote ranker error, use fallback ranker", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+        }
+        return fallback.rank(query, documents);
+    }
+}
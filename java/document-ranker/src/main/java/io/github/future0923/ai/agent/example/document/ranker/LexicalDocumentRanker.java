@@ -0,0 +1,128 @@
+package io.github.future0923.ai.agent.example.document.ranker;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.postretrieval.ranking.DocumentRanker;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 进程内BM25词法重排序，不依赖远程模型，用作rerank模型不可用或过慢时的降级
+ * <p>
+ * 英文、数字按单词切分，中文等表意文字按相邻两个字切分（bigram）
+ *
+ * @author future0923
+ */
+public class LexicalDocumentRanker implements DocumentRanker {
+
+    private final double k1;
+
+    private final double b;
+
+    public LexicalDocumentRanker() {
+        this(1.2, 0.75);
+    }
+
+    public LexicalDocumentRanker(double k1, double b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    @NotNull
+    @Override
+    public List<Document> rank(@NotNull Query query, @NotNull List<Document> documents) {
+        if (CollectionUtils.isEmpty(documents)) {
+            return new ArrayList<>();
+        }
+        Set<String> queryTerms = new HashSet<>(tokenize(query.text()));
+        int size = documents.size();
+        List<Map<String, Integer>> termFrequencies = new ArrayList<>(size);
+        Map<String, Integer> documentFrequencies = new HashMap<>();
+        int[] lengths = new int[size];
+        long totalLength = 0;
+        for (int i = 0; i < size; i++) {
+            List<String> terms = tokenize(documents.get(i).getText());
+            Map<String, Integer> termFrequency = new HashMap<>();
+            for (String term : terms) {
+                // 只统计查询中出现的词
+                if (queryTerms.contains(term)) {
+                    termFrequency.merge(term, 1, Integer::sum);
+                }
+            }
+            termFrequency.keySet().forEach(term -> documentFrequencies.merge(term, 1, Integer::sum));
+            termFrequencies.add(termFrequency);
+            lengths[i] = terms.size();
+            totalLength += terms.size();
+        }
+        double averageLength = Math.max(1.0, (double) totalLength / size);
+        List<ScoredDocument> scoredDocuments = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            double score = 0;
+            for (Map.Entry<String, Integer> entry : termFrequencies.get(i).entrySet()) {
+                int documentFrequency = documentFrequencies.get(entry.getKey());
+                double idf = Math.log(1 + (size - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                int tf = entry.getValue();
+                score += idf * tf * (k1 + 1) / (tf + k1 * (1 - b + b * lengths[i] / averageLength));
+            }
+            scoredDocuments.add(new ScoredDocument(documents.get(i), score));
+        }
+        // 稳定排序，分数相同时保持原顺序
+        scoredDocuments.sort(Comparator.comparingDouble(ScoredDocument::score).reversed());
+        List<Document> rankedDocuments = new ArrayList<>(size);
+        for (ScoredDocument scoredDocument : scoredDocuments) {
+            rankedDocuments.add(scoredDocument.document().mutate().score(scoredDocument.score()).build());
+        }
+        return rankedDocuments;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (!StringUtils.hasText(text)) {
+            return terms;
+        }
+        StringBuilder word = new StringBuilder();
+        char previousIdeograph = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (Character.isIdeographic(c)) {
+                flush(word, terms);
+                if (previousIdeograph != 0) {
+                    terms.add(new String(new char[]{previousIdeograph, c}));
+                } else if (i + 1 >= text.length() || !Character.isIdeographic(text.charAt(i + 1))) {
+                    // 单独的一个字
+                    terms.add(String.valueOf(c));
+                }
+                previousIdeograph = c;
+            } else {
+                previousIdeograph = 0;
+                if (Character.isLetterOrDigit(c)) {
+                    word.append(c);
+                } else {
+                    flush(word, terms);
+                }
+            }
+        }
+        flush(word, terms);
+        return terms;
+    }
+
+    private static void flush(StringBuilder word, List<String> terms) {
+        if (!word.isEmpty()) {
+            terms.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private record ScoredDocument(Document document, double score) {
+
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.future0923.ai.agent.example.document.ranker;
+
+import com.alibaba.cloud.ai.document.DocumentWithScore;
+import com.alibaba.cloud.ai.model.RerankModel;
+import com.alibaba.cloud.ai.model.RerankResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author future0923
+ */
+public class DashScopeDocumentRankerTest {
+
+    @Test
+    public void rank() {
+        Document first = new Document("1", "苹果", Map.of());
+        Document second = new Document("2", "香蕉", Map.of());
+        Document third = new Document("3", "橘子", Map.of());
+        // 模拟rerank返回：倒序，并带一个不存在的id
+        RerankModel rerankModel = request -> new RerankResponse(List.of(
+                DocumentWithScore.builder().withDocument(third).withScore(0.9).build(),
+                DocumentWithScore.builder().withDocument(new Document("4", "梨", Map.of())).withScore(0.8).build(),
+                DocumentWithScore.builder().withDocument(second).withScore(0.5).build(),
+                DocumentWithScore.builder().withDocument(first).withScore(0.1).build()
+        ));
+        List<Document> ranked = new DashScopeDocumentRanker(rerankModel).rank(new Query("水果"), List.of(first, second, third));
+        assertEquals(List.of("3", "2", "1"), ranked.stream().map(Document::getId).toList());
+        assertEquals(0.9, ranked.get(0).getScore());
+        assertEquals(0.1, ranked.get(2).getScore());
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.future0923.ai.agent.example.document.ranker;
+
+import com.alibaba.cloud.ai.document.DocumentWithScore;
+import com.alibaba.cloud.ai.model.RerankModel;
+import com.alibaba.cloud.ai.model.RerankResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author future0923
+ */
+public class HedgedDocumentRankerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final Document weather = new Document("1", "今天杭州天气晴朗", Map.of());
+
+    private final Document price = new Document("2", "小米SU7售价22.99万元起", Map.of());
+
+    private final Query query = new Query("小米SU7售价");
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void remoteWithinBudget() {
+        // 远程重排序把 weather 排在第一，用来区分本地重排序的结果
+        RerankModel rerankModel = request -> new RerankResponse(List.of(
+                DocumentWithScore.builder().withDocument(weather).withScore(0.9).build(),
+                DocumentWithScore.builder().withDocument(price).withScore(0.1).build()
+        ));
+        assertEquals("1", hedged(rerankModel).rank(query, List.of(weather, price)).get(0).getId());
+    }
+
+    @Test
+    public void remoteTooSlow() {
+        RerankModel rerankModel = request -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new RerankResponse(List.of());
+        };
+        long start = System.nanoTime();
+        List<Document> ranked = hedged(rerankModel).rank(query, List.of(weather, price));
+        assertEquals("2", ranked.get(0).getId());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1000);
+    }
+
+    @Test
+    public void remoteError() {
+        RerankModel rerankModel = request -> {
+            throw new IllegalStateException("rerank down");
+        };
+        assertEquals("2", hedged(rerankModel).rank(query, List.of(weather, price)).get(0).getId());
+    }
+
+    private HedgedDocumentRanker hedged(RerankModel rerankModel) {
+        return new HedgedDocumentRanker(
+                new DashScopeDocumentRanker(rerankModel),
+                new LexicalDocumentRanker(),
+                Duration.ofMillis(200),
+                executor
+        );
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.future0923.ai.agent.example.document.ranker;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author future0923
+ */
+public class LexicalDocumentRankerTest {
+
+    @Test
+    public void tokenize() {
+        assertEquals(List.of("spring", "ai", "检索", "索增", "增强", "rag"), LexicalDocumentRanker.tokenize("Spring AI 检索增强 RAG"));
+    }
+
+    @Test
+    public void rank() {
+        Document weather = new Document("1", "今天杭州天气晴朗，适合出游", Map.of());
+        Document price = new Document("2", "小米SU7售价22.99万元起，续航800km", Map.of());
+        Document other = new Document("3", "Spring AI 提供了检索增强生成的能力", Map.of());
+        List<Document> ranked = new LexicalDocumentRanker().rank(new Query("小米SU7的售价是多少"), List.of(weather, price, other));
+        assertEquals("2", ranked.get(0).getId());
+        assertTrue(ranked.get(0).getScore() > ranked.get(1).getScore());
+        assertEquals(3, ranked.size());
+    }
+}
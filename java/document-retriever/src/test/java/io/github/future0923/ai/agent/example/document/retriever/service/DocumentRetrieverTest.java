@@ -4,8 +4,8 @@ import com.alibaba.cloud.ai.dashscope.api.DashScopeApi;
 import com.alibaba.cloud.ai.dashscope.rag.DashScopeDocumentRetriever;
 import com.alibaba.cloud.ai.dashscope.rag.DashScopeDocumentRetrieverOptions;
 import com.alibaba.cloud.ai.model.RerankModel;
+import io.github.future0923.ai.agent.example.document.ranker.DashScopeDocumentRanker;
 import io.github.future0923.ai.agent.example.document.retriever.DocumentRetrieverApplicationTest;
-import io.github.future0923.ai.agent.example.document.retriever.document.ranker.DashScopeDocumentRanker;
 import org.junit.jupiter.api.Test;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.rag.Query;
@@ -1,26 +1,68 @@
 package io.github.future0923.ai.agent.example.flight.booking.config;
 
+import io.github.future0923.ai.agent.example.chat.memory.support.BoundedInMemoryChatMemory;
+import io.github.future0923.ai.agent.example.chat.memory.support.WindowedChatMemory;
+import io.github.future0923.ai.agent.example.flight.booking.metrics.BookingCacheEndpoint;
+import io.github.future0923.ai.agent.example.flight.booking.metrics.DbCallInterceptor;
+import io.github.future0923.ai.agent.example.vector.store.support.VectorStoreSnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.InMemoryChatMemory;
 import org.springframework.ai.embedding.EmbeddingModel;
-import org.springframework.ai.vectorstore.SimpleVectorStore;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+
+import java.nio.file.Path;
 
 /**
  * @author future0923
  */
 @Configuration
+@EnableCaching
 public class Config {
 
+    /**
+     * 每次最多带4000个token的历史
+     */
     @Bean
     public ChatMemory chatMemory() {
-        return new InMemoryChatMemory();
+        return WindowedChatMemory.builder()
+                .delegate(BoundedInMemoryChatMemory.builder().build())
+                .maxTokens(4000)
+                .build();
+    }
+
+    /**
+     * 服务条款向量库，启动时加载快照，服务条款或向量模型变了才重新向量化
+     */
+    @Bean
+    public VectorStore vectorStore(EmbeddingModel embeddingModel,
+                                   @Value("classpath:rag/terms-of-service.txt") Resource resource,
+                                   @Value("${flight.booking.rag.snapshot-dir}") String snapshotDir,
+                                   @Value("${spring.ai.dashscope.embedding.options.model:text-embedding-v1}") String embeddingModelName) {
+        return VectorStoreSnapshot.builder()
+                .embeddingModel(embeddingModel)
+                .source(resource)
+                .directory(Path.of(snapshotDir))
+                .fingerprint(embeddingModelName)
+                .build()
+                .load();
+    }
+
+    /**
+     * 数据库调用次数，通过 /actuator/metrics/flight.booking.db.calls 或 /actuator/bookingCache 查看
+     */
+    @Bean
+    public DbCallInterceptor dbCallInterceptor(MeterRegistry meterRegistry) {
+        return new DbCallInterceptor(meterRegistry);
     }
 
     @Bean
-    public VectorStore vectorStore(EmbeddingModel embeddingModel) {
-        return SimpleVectorStore.builder(embeddingModel).build();
+    public BookingCacheEndpoint bookingCacheEndpoint(CacheManager cacheManager, MeterRegistry meterRegistry) {
+        return new BookingCacheEndpoint(cacheManager, meterRegistry);
     }
 }
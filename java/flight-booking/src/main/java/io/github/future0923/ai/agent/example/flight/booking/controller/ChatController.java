@@ -1,19 +1,14 @@
 package io.github.future0923.ai.agent.example.flight.booking.controller;
 
 import io.github.future0923.ai.agent.example.flight.booking.tools.FlightBookingTools;
-import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.QuestionAnswerAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.reader.TextReader;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -33,14 +28,6 @@ public class ChatController {
 
     private final VectorStore vectorStore;
 
-    @Value("classpath:rag/terms-of-service.txt")
-    private Resource resource;
-
-    @PostConstruct
-    public void init() {
-        vectorStore.add(new TokenTextSplitter().transform(new TextReader(resource).read()));
-    }
-
     public ChatController(ChatClient.Builder builder, FlightBookingTools tools, ChatMemory chatMemory, VectorStore vectorStore) {
         this.chatClient = builder
                 .defaultSystem("""
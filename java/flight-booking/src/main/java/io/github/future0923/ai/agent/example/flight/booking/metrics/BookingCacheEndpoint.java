@@ -0,0 +1,59 @@
+package io.github.future0923.ai.agent.example.flight.booking.metrics;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * /actuator/bookingCache，汇总查询缓存的命中率和实际的数据库调用次数
+ *
+ * @author future0923
+ */
+@Endpoint(id = "bookingCache")
+public class BookingCacheEndpoint {
+
+    private final CacheManager cacheManager;
+
+    private final MeterRegistry meterRegistry;
+
+    public BookingCacheEndpoint(CacheManager cacheManager, MeterRegistry meterRegistry) {
+        this.cacheManager = cacheManager;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        Map<String, Object> caches = new TreeMap<>();
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache instanceof CaffeineCache caffeineCache) {
+                com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = caffeineCache.getNativeCache();
+                CacheStats stats = nativeCache.stats();
+                Map<String, Object> summary = new LinkedHashMap<>();
+                summary.put("size", nativeCache.estimatedSize());
+                summary.put("hits", stats.hitCount());
+                summary.put("misses", stats.missCount());
+                summary.put("hitRate", stats.hitRate());
+                summary.put("evictions", stats.evictionCount());
+                caches.put(name, summary);
+            }
+        }
+        Map<String, Object> dbCalls = new TreeMap<>();
+        for (Counter counter : meterRegistry.find(DbCallInterceptor.DB_CALLS).counters()) {
+            dbCalls.put(counter.getId().getTag("statement"), (long) counter.count());
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("caches", caches);
+        result.put("dbCalls", dbCalls);
+        return result;
+    }
+}
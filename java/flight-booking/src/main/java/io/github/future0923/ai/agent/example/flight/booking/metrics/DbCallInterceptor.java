@@ -0,0 +1,53 @@
+package io.github.future0923.ai.agent.example.flight.booking.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * 统计实际执行的数据库调用次数，和缓存命中率对照看缓存省下了多少次查询
+ * <li>flight.booking.db.calls：statement为Mapper方法名，如FlightBookingDao.selectList
+ *
+ * @author future0923
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
+})
+public class DbCallInterceptor implements Interceptor {
+
+    public static final String DB_CALLS = "flight.booking.db.calls";
+
+    private final MeterRegistry meterRegistry;
+
+    public DbCallInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        Counter.builder(DB_CALLS)
+                .description("数据库调用次数")
+                .tag("statement", statement(statement.getId()))
+                .register(meterRegistry)
+                .increment();
+        return invocation.proceed();
+    }
+
+    /**
+     * 去掉包名，只保留Mapper类名和方法名
+     */
+    private static String statement(String id) {
+        int method = id.lastIndexOf('.');
+        int type = id.lastIndexOf('.', method - 1);
+        return id.substring(type + 1);
+    }
+}
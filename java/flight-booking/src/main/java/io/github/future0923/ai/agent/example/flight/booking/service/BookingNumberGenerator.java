@@ -0,0 +1,75 @@
+package io.github.future0923.ai.agent.example.flight.booking.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 预定号生成器，雪花算法，不访问数据库
+ * <p>
+ * 预定号由 41位毫秒时间戳（从2025-01-01开始） + 10位节点id + 12位序号 组成，同一节点单调递增，不同节点不会重复。
+ * <li>时间戳和序号放在一个AtomicLong里用CAS更新，不加锁
+ * <li>同一毫秒序号用完时借用下一毫秒，时钟回拨时沿用上次的时间戳继续递增，都不会重复
+ * <p>
+ * 部署多个实例时每个实例配置不同的flight.booking.node-id（0 ~ 1023）
+ *
+ * @author future0923
+ */
+@Component
+public class BookingNumberGenerator {
+
+    /**
+     * 2025-01-01 00:00:00 UTC
+     */
+    static final long EPOCH = 1735689600000L;
+
+    private static final int NODE_BITS = 10;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+
+    private final long nodeId;
+
+    private final LongSupplier clock;
+
+    /**
+     * 上一次生成的 时间戳 << SEQUENCE_BITS | 序号，序号溢出时自然进位到时间戳
+     */
+    private final AtomicLong last = new AtomicLong();
+
+    @Autowired
+    public BookingNumberGenerator(@Value("${flight.booking.node-id:0}") long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock 当前毫秒时间，测试时模拟时钟
+     */
+    BookingNumberGenerator(long nodeId, LongSupplier clock) {
+        Assert.isTrue(nodeId >= 0 && nodeId <= MAX_NODE_ID, "node-id must be between 0 and " + MAX_NODE_ID);
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    public long nextId() {
+        long next;
+        long previous;
+        do {
+            previous = last.get();
+            long now = (clock.getAsLong() - EPOCH) << SEQUENCE_BITS;
+            next = Math.max(now, previous + 1);
+        } while (!last.compareAndSet(previous, next));
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return timestamp << (NODE_BITS + SEQUENCE_BITS) | nodeId << SEQUENCE_BITS | sequence;
+    }
+
+    public String next() {
+        return Long.toString(nextId());
+    }
+}
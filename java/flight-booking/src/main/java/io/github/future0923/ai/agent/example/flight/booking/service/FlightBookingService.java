@@ -6,40 +6,72 @@ import io.github.future0923.ai.agent.example.flight.booking.entity.FlightBooking
 import io.github.future0923.ai.agent.example.flight.booking.enums.BookingClass;
 import io.github.future0923.ai.agent.example.flight.booking.enums.BookingStatus;
 import io.github.future0923.ai.agent.example.flight.booking.tools.FlightBookingTools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.List;
-import java.util.Random;
+import java.util.Objects;
 
 /**
+ * 查询结果按用户、按预定号缓存，同一会话里大模型反复调用查询工具时不再每次访问数据库
+ * <li>缓存大小和过期时间见spring.cache.caffeine.spec，过期时间同时兜底并发读写时可能留下的旧值
+ * <li>预订后失效该用户的列表，取消后失效该预定号和所属用户的列表
+ *
  * @author future0923
  */
 @Service
 public class FlightBookingService {
 
+    public static final String USER_BOOKINGS = "userBookings";
+
+    public static final String BOOKING_INFO = "bookingInfo";
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightBookingService.class);
+
+    /**
+     * 同一用户同一航线的唯一索引，见V3__unique_flight_booking_route.sql
+     */
+    private static final String UNIQUE_ROUTE = "uk_name_from_to";
+
+    /**
+     * 预定号冲突时最多插入的次数
+     */
+    private static final int MAX_INSERT_ATTEMPTS = 3;
+
     private final FlightBookingDao dao;
 
-    public FlightBookingService(FlightBookingDao dao) {
+    private final BookingNumberGenerator bookingNumberGenerator;
+
+    private final CacheManager cacheManager;
+
+    public FlightBookingService(FlightBookingDao dao, BookingNumberGenerator bookingNumberGenerator, CacheManager cacheManager) {
         this.dao = dao;
+        this.bookingNumberGenerator = bookingNumberGenerator;
+        this.cacheManager = cacheManager;
     }
 
+    @Cacheable(cacheNames = USER_BOOKINGS, key = "#username")
     public List<FlightBooking> getUserBookings(String username) {
         LambdaQueryWrapper<FlightBooking> queryWrapper = new LambdaQueryWrapper<>();
         queryWrapper.eq(FlightBooking::getName, username);
         return dao.selectList(queryWrapper);
     }
 
+    /**
+     * 直接插入，由(name, from, to)唯一索引判断是否已经预订过，不需要先查询，并发或重试的重复调用只有一次成功
+     * <p>
+     * 只有违反uk_name_from_to才是已经预订过；预定号主键冲突（同一毫秒重启、重启时时钟回拨、node-id重复）时换一个预定号重试
+     */
+    @CacheEvict(cacheNames = USER_BOOKINGS, key = "#dto.name()")
     public String bookings(FlightBookingTools.BookingRecordDTO dto) {
-        LambdaQueryWrapper<FlightBooking> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(FlightBooking::getName, dto.name());
-        queryWrapper.eq(FlightBooking::getFrom, dto.from());
-        queryWrapper.eq(FlightBooking::getTo, dto.to());
-        if (dao.exists(queryWrapper)) {
-            return "对不起你已经预订过了";
-        }
         FlightBooking booking = new FlightBooking();
-        booking.setBookingNumber(new Random().nextInt(1000000) + "");
         booking.setDate(LocalDate.now());
         booking.setBookingTo(dto.bookingTo());
         booking.setName(dto.name());
@@ -47,26 +79,55 @@ public class FlightBookingService {
         booking.setTo(dto.to());
         booking.setBookingStatus(BookingStatus.CONFIRMED);
         booking.setBookingClass(BookingClass.ECONOMY);
-        dao.insert(booking);
-        return "预订成功";
+        for (int attempt = 1; ; attempt++) {
+            booking.setBookingNumber(bookingNumberGenerator.next());
+            try {
+                dao.insert(booking);
+                return "预订成功";
+            } catch (DuplicateKeyException e) {
+                if (violates(e, UNIQUE_ROUTE)) {
+                    return "对不起你已经预订过了";
+                }
+                if (attempt >= MAX_INSERT_ATTEMPTS) {
+                    throw e;
+                }
+                logger.warn("Booking number {} already exists, retry with a new one", booking.getBookingNumber());
+            }
+        }
     }
 
+    /**
+     * 取消前直接查库，不读缓存，避免根据过期的状态判断
+     */
+    @CacheEvict(cacheNames = BOOKING_INFO, key = "#bookingNumber")
     public String cancelBookings(String bookingNumber) {
-        LambdaQueryWrapper<FlightBooking> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(FlightBooking::getBookingNumber, bookingNumber);
-        List<FlightBooking> flightBookings = dao.selectList(queryWrapper);
-        if (flightBookings.isEmpty()) {
+        FlightBooking flightBooking = dao.selectById(bookingNumber);
+        if (Objects.isNull(flightBooking)) {
             return "预定号不存在";
         }
-        if (flightBookings.get(0).getBookingStatus() == BookingStatus.CANCELLED) {
+        if (flightBooking.getBookingStatus() == BookingStatus.CANCELLED) {
             return "预定已经取消";
         }
-        flightBookings.get(0).setBookingStatus(BookingStatus.CANCELLED);
-        dao.updateById((flightBookings.get(0)));
+        flightBooking.setBookingStatus(BookingStatus.CANCELLED);
+        dao.updateById(flightBooking);
+        // 参数里只有预定号，用户的列表查到所属用户后再失效
+        Cache userBookings = cacheManager.getCache(USER_BOOKINGS);
+        if (Objects.nonNull(userBookings)) {
+            userBookings.evict(flightBooking.getName());
+        }
         return "取消预订成功";
     }
 
+    @Cacheable(cacheNames = BOOKING_INFO, key = "#bookingNumber", unless = "#result == null")
     public FlightBooking bookingsInfo(String bookingNumber) {
         return dao.selectById(bookingNumber);
     }
+
+    /**
+     * MySQL的错误信息为 Duplicate entry '...' for key 'flight_booking.uk_name_from_to'
+     */
+    private static boolean violates(DuplicateKeyException e, String key) {
+        String message = e.getMostSpecificCause().getMessage();
+        return Objects.nonNull(message) && (message.contains("'" + key + "'") || message.contains("." + key + "'"));
+    }
 }
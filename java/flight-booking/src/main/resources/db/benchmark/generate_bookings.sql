@@ -0,0 +1,24 @@
+-- 生成100万条预订数据，用于观察各工具调用的SQL耗时，不属于迁移脚本，需要手动执行
+-- 20万个用户（user0 ~ user199999），每人5条不同航线的预订
+SET SESSION cte_max_recursion_depth = 1000000;
+
+INSERT INTO `flight_booking` (`booking_number`, `date`, `booking_to`, `name`, `from`, `to`, `booking_status`, `booking_class`)
+WITH RECURSIVE seq (n) AS (
+    SELECT 0
+    UNION ALL
+    SELECT n + 1 FROM seq WHERE n < 999999
+)
+SELECT CONCAT('B', LPAD(n, 10, '0')),
+       CURRENT_DATE - INTERVAL (n % 365) DAY,
+       CURRENT_DATE + INTERVAL (n % 90) DAY,
+       CONCAT('user', n DIV 5),
+       ELT(1 + n % 5, '北京', '上海', '广州', '深圳', '杭州'),
+       ELT(1 + (n + 2) % 5, '北京', '上海', '广州', '深圳', '杭州'),
+       ELT(1 + n % 3, 'CONFIRMED', 'COMPLETED', 'CANCELLED'),
+       ELT(1 + n % 3, 'ECONOMY', 'PREMIUM_ECONOMY', 'BUSINESS')
+FROM seq;
+
+-- 对应各工具调用的查询，type应为const或ref，rows为个位数
+EXPLAIN SELECT * FROM `flight_booking` WHERE `name` = 'user123456';
+EXPLAIN SELECT 1 FROM `flight_booking` WHERE `name` = 'user123456' AND `from` = '北京' AND `to` = '广州' LIMIT 1;
+EXPLAIN SELECT * FROM `flight_booking` WHERE `booking_number` = 'B0000617280';
@@ -1,4 +1,4 @@
-CREATE TABLE `flight_booking` (
+CREATE TABLE IF NOT EXISTS `flight_booking` (
       `booking_number` varchar(255) DEFAULT NULL,
       `date` date DEFAULT NULL,
       `booking_to` date DEFAULT NULL,
@@ -7,4 +7,4 @@ CREATE TABLE `flight_booking` (
       `to` varchar(255) DEFAULT NULL,
       `booking_status` varchar(255) DEFAULT NULL,
       `booking_class` varchar(255) DEFAULT NULL
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
\ No newline at end of file
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
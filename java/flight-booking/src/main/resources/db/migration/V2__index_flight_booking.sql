@@ -0,0 +1,8 @@
+-- 预定号作为主键：cancelBookings、bookingsInfo按预定号查询
+-- 已有数据中预定号为空或重复时需要先处理，否则迁移失败
+ALTER TABLE `flight_booking`
+    MODIFY `booking_number` varchar(255) NOT NULL,
+    ADD PRIMARY KEY (`booking_number`);
+
+-- getUserBookings按name查询（最左前缀），bookings按name、from、to查询是否已预订
+CREATE INDEX `idx_name_from_to` ON `flight_booking` (`name`, `from`, `to`);
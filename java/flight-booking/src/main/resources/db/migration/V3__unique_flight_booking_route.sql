@@ -0,0 +1,5 @@
+-- 同一用户同一航线只能预订一次，由唯一索引保证，并发预订时只有一条插入成功
+-- 已有数据中存在重复的name、from、to时需要先处理，否则迁移失败
+ALTER TABLE `flight_booking`
+    DROP INDEX `idx_name_from_to`,
+    ADD UNIQUE INDEX `uk_name_from_to` (`name`, `from`, `to`);
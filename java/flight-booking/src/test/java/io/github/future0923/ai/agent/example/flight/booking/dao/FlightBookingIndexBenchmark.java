@@ -0,0 +1,140 @@
+package io.github.future0923.ai.agent.example.flight.booking.dao;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 100万条预订数据上各工具调用的查询耗时：没有索引（V1） vs 预定号主键加uk_name_from_to唯一索引（V2、V3）
+ * <p>
+ * 用H2的MySQL模式代替MySQL，数据与db/benchmark/generate_bookings.sql一致：20万个用户，每人5条不同航线的预订。
+ * 迁移脚本中一条ALTER TABLE修改多处的写法H2不支持，建表和建索引的语句按H2的语法改写，索引与迁移后的一致
+ * <p>
+ * mvn -Pbenchmark -pl flight-booking -am test-compile exec:exec -Dbenchmark.module=flight-booking -Dbenchmark=FlightBookingIndexBenchmark
+ *
+ * @author future0923
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FlightBookingIndexBenchmark {
+
+    private static final int BOOKINGS = 1_000_000;
+
+    private static final int BOOKINGS_PER_USER = 5;
+
+    private static final String[] CITIES = {"北京", "上海", "广州", "深圳", "杭州"};
+
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    private Connection connection;
+
+    private PreparedStatement byName;
+
+    private PreparedStatement byRoute;
+
+    private PreparedStatement byBookingNumber;
+
+    @Setup
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:flight_booking;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    CREATE TABLE `flight_booking` (
+                        `booking_number` varchar(255) NOT NULL,
+                        `date` date DEFAULT NULL,
+                        `booking_to` date DEFAULT NULL,
+                        `name` varchar(255) DEFAULT NULL,
+                        `from` varchar(255) DEFAULT NULL,
+                        `to` varchar(255) DEFAULT NULL,
+                        `booking_status` varchar(255) DEFAULT NULL,
+                        `booking_class` varchar(255) DEFAULT NULL
+                    )""");
+            statement.execute("""
+                    INSERT INTO `flight_booking`
+                    SELECT CONCAT('B', LPAD(X, 10, '0')),
+                           DATEADD(DAY, -MOD(X, 365), CURRENT_DATE),
+                           DATEADD(DAY, MOD(X, 90), CURRENT_DATE),
+                           CONCAT('user', X / %d),
+                           ARRAY['北京', '上海', '广州', '深圳', '杭州'][1 + MOD(X, 5)],
+                           ARRAY['北京', '上海', '广州', '深圳', '杭州'][1 + MOD(X + 2, 5)],
+                           ARRAY['CONFIRMED', 'COMPLETED', 'CANCELLED'][1 + MOD(X, 3)],
+                           ARRAY['ECONOMY', 'PREMIUM_ECONOMY', 'BUSINESS'][1 + MOD(X, 3)]
+                    FROM SYSTEM_RANGE(0, %d)""".formatted(BOOKINGS_PER_USER, BOOKINGS - 1));
+            if (indexed) {
+                statement.execute("ALTER TABLE `flight_booking` ADD PRIMARY KEY (`booking_number`)");
+                statement.execute("CREATE UNIQUE INDEX `uk_name_from_to` ON `flight_booking` (`name`, `from`, `to`)");
+            }
+        }
+        // getUserBookings
+        byName = connection.prepareStatement("SELECT * FROM `flight_booking` WHERE `name` = ?");
+        // 改成唯一索引之前bookings插入前查询是否已预订
+        byRoute = connection.prepareStatement("SELECT 1 FROM `flight_booking` WHERE `name` = ? AND `from` = ? AND `to` = ? LIMIT 1");
+        // bookingsInfo、cancelBookings
+        byBookingNumber = connection.prepareStatement("SELECT * FROM `flight_booking` WHERE `booking_number` = ?");
+        if (count(byName, "user123456") != BOOKINGS_PER_USER
+                || count(byRoute, "user123456", CITIES[0], CITIES[2]) != 1
+                || count(byBookingNumber, "B0000617280") != 1) {
+            throw new IllegalStateException("unexpected benchmark data");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public int getUserBookings() throws SQLException {
+        return count(byName, "user" + ThreadLocalRandom.current().nextInt(BOOKINGS / BOOKINGS_PER_USER));
+    }
+
+    @Benchmark
+    public int alreadyBooked() throws SQLException {
+        int n = ThreadLocalRandom.current().nextInt(BOOKINGS);
+        return count(byRoute, "user" + n / BOOKINGS_PER_USER, CITIES[n % 5], CITIES[(n + 2) % 5]);
+    }
+
+    @Benchmark
+    public int bookingsInfo() throws SQLException {
+        return count(byBookingNumber, "B%010d".formatted(ThreadLocalRandom.current().nextInt(BOOKINGS)));
+    }
+
+    private static int count(PreparedStatement statement, String... parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setString(i + 1, parameters[i]);
+        }
+        int count = 0;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
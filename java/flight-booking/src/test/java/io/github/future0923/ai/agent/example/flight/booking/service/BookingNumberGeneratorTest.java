@@ -0,0 +1,117 @@
+package io.github.future0923.ai.agent.example.flight.booking.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author future0923
+ */
+public class BookingNumberGeneratorTest {
+
+    private static final int THREADS = 8;
+
+    private static final int IDS_PER_THREAD = 100_000;
+
+    @Test
+    public void uniqueAndMonotonicAcrossThreads() throws Exception {
+        BookingNumberGenerator generator = new BookingNumberGenerator(7);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>(THREADS);
+            for (int i = 0; i < THREADS; i++) {
+                Callable<long[]> task = () -> {
+                    start.await();
+                    long[] ids = new long[IDS_PER_THREAD];
+                    for (int j = 0; j < IDS_PER_THREAD; j++) {
+                        ids[j] = generator.nextId();
+                    }
+                    return ids;
+                };
+                futures.add(executor.submit(task));
+            }
+            start.countDown();
+            Set<Long> all = new HashSet<>(THREADS * IDS_PER_THREAD * 2);
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get(30, TimeUnit.SECONDS);
+                for (int j = 0; j < ids.length; j++) {
+                    if (j > 0) {
+                        assertTrue(ids[j] > ids[j - 1], "ids of one thread must increase");
+                    }
+                    assertEquals(7, node(ids[j]));
+                    all.add(ids[j]);
+                }
+            }
+            assertEquals(THREADS * IDS_PER_THREAD, all.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void sequenceOverflowBorrowsNextMillisecond() {
+        long now = BookingNumberGenerator.EPOCH + 1000;
+        BookingNumberGenerator generator = new BookingNumberGenerator(1, () -> now);
+        for (int i = 0; i < 4096; i++) {
+            long id = generator.nextId();
+            assertEquals(1000, timestamp(id));
+            assertEquals(i, sequence(id));
+        }
+        long overflow = generator.nextId();
+        assertEquals(1001, timestamp(overflow));
+        assertEquals(0, sequence(overflow));
+        assertEquals(1, node(overflow));
+    }
+
+    @Test
+    public void clockRollbackKeepsIncreasing() {
+        AtomicLong now = new AtomicLong(BookingNumberGenerator.EPOCH + 5000);
+        BookingNumberGenerator generator = new BookingNumberGenerator(0, now::get);
+        long before = generator.nextId();
+        // 时钟回拨1秒
+        now.addAndGet(-1000);
+        long afterRollback = generator.nextId();
+        assertTrue(afterRollback > before);
+        assertEquals(5000, timestamp(afterRollback));
+        assertEquals(1, sequence(afterRollback));
+        // 时钟追上之后使用真实时间
+        now.addAndGet(2000);
+        long caughtUp = generator.nextId();
+        assertEquals(6000, timestamp(caughtUp));
+        assertEquals(0, sequence(caughtUp));
+    }
+
+    @Test
+    public void nodeIdRange() {
+        assertThrows(IllegalArgumentException.class, () -> new BookingNumberGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new BookingNumberGenerator(1024));
+        assertEquals(1023, node(new BookingNumberGenerator(1023).nextId()));
+    }
+
+    private static long timestamp(long id) {
+        return id >>> 22;
+    }
+
+    private static long node(long id) {
+        return (id >>> 12) & 1023;
+    }
+
+    private static long sequence(long id) {
+        return id & 4095;
+    }
+}
@@ -0,0 +1,131 @@
+package io.github.future0923.ai.agent.example.flight.booking.service;
+
+import io.github.future0923.ai.agent.example.flight.booking.dao.FlightBookingDao;
+import io.github.future0923.ai.agent.example.flight.booking.entity.FlightBooking;
+import io.github.future0923.ai.agent.example.flight.booking.tools.FlightBookingTools;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author future0923
+ */
+public class FlightBookingServiceTest {
+
+    private static final int THREADS = 32;
+
+    /**
+     * 模拟uk_name_from_to唯一索引
+     */
+    private final Set<String> uniqueKeys = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, FlightBooking> rows = new ConcurrentHashMap<>();
+
+    private final FlightBookingService service = new FlightBookingService(dao(), new BookingNumberGenerator(0), new NoOpCacheManager());
+
+    @Test
+    public void concurrentDuplicateBookingsSucceedOnce() throws Exception {
+        FlightBookingTools.BookingRecordDTO dto = new FlightBookingTools.BookingRecordDTO(LocalDate.now().plusDays(1), "张三", "北京", "上海");
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<String>> futures = new ArrayList<>(THREADS);
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return service.bookings(dto);
+                }));
+            }
+            start.countDown();
+            List<String> results = new ArrayList<>(THREADS);
+            for (Future<String> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            Map<String, Long> counts = results.stream().collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+            assertEquals(Map.of("预订成功", 1L, "对不起你已经预订过了", (long) THREADS - 1), counts);
+            assertEquals(1, rows.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void differentRoutesBothSucceed() {
+        assertEquals("预订成功", service.bookings(new FlightBookingTools.BookingRecordDTO(LocalDate.now(), "张三", "北京", "上海")));
+        assertEquals("预订成功", service.bookings(new FlightBookingTools.BookingRecordDTO(LocalDate.now(), "张三", "上海", "北京")));
+        assertEquals("对不起你已经预订过了", service.bookings(new FlightBookingTools.BookingRecordDTO(LocalDate.now(), "张三", "北京", "上海")));
+        assertEquals(2, rows.size());
+    }
+
+    @Test
+    public void bookingNumberClashRetriesWithNewNumber() {
+        BookingNumberGenerator generator = mock(BookingNumberGenerator.class);
+        when(generator.next()).thenReturn("1", "1", "2");
+        FlightBookingService service = new FlightBookingService(dao(), generator, new NoOpCacheManager());
+        assertEquals("预订成功", service.bookings(new FlightBookingTools.BookingRecordDTO(LocalDate.now(), "张三", "北京", "上海")));
+        // 预定号冲突不是已经预订过，换一个预定号后成功
+        assertEquals("预订成功", service.bookings(new FlightBookingTools.BookingRecordDTO(LocalDate.now(), "李四", "北京", "上海")));
+        assertEquals("李四", rows.get("2").getName());
+        verify(generator, times(3)).next();
+    }
+
+    @Test
+    public void bookingNumberClashGivesUpAfterMaxAttempts() {
+        BookingNumberGenerator generator = mock(BookingNumberGenerator.class);
+        when(generator.next()).thenReturn("1");
+        FlightBookingService service = new FlightBookingService(dao(), generator, new NoOpCacheManager());
+        service.bookings(new FlightBookingTools.BookingRecordDTO(LocalDate.now(), "张三", "北京", "上海"));
+        assertThrows(DuplicateKeyException.class, () -> service.bookings(new FlightBookingTools.BookingRecordDTO(LocalDate.now(), "李四", "北京", "上海")));
+        assertEquals(1, rows.size());
+    }
+
+    /**
+     * 模拟MySQL的主键和唯一索引，先检查主键
+     */
+    private FlightBookingDao dao() {
+        FlightBookingDao dao = mock(FlightBookingDao.class);
+        when(dao.insert(any(FlightBooking.class))).thenAnswer(invocation -> {
+            FlightBooking booking = invocation.getArgument(0);
+            String route = booking.getName() + "-" + booking.getFrom() + "-" + booking.getTo();
+            synchronized (rows) {
+                if (rows.containsKey(booking.getBookingNumber())) {
+                    throw duplicate(booking.getBookingNumber(), "PRIMARY");
+                }
+                if (!uniqueKeys.add(route)) {
+                    throw duplicate(route, "uk_name_from_to");
+                }
+                rows.put(booking.getBookingNumber(), booking);
+            }
+            return 1;
+        });
+        return dao;
+    }
+
+    private static DuplicateKeyException duplicate(String entry, String key) {
+        String message = "Duplicate entry '" + entry + "' for key 'flight_booking." + key + "'";
+        return new DuplicateKeyException("### Error updating database. Cause: " + message, new SQLIntegrityConstraintViolationException(message));
+    }
+}
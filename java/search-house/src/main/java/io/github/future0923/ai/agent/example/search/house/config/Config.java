@@ -3,8 +3,9 @@ package io.github.future0923.ai.agent.example.search.house.config;
 import com.alibaba.cloud.ai.dashscope.api.DashScopeApi;
 import com.alibaba.cloud.ai.dashscope.rag.DashScopeCloudStore;
 import com.alibaba.cloud.ai.dashscope.rag.DashScopeStoreOptions;
+import io.github.future0923.ai.agent.example.chat.memory.support.BoundedInMemoryChatMemory;
+import io.github.future0923.ai.agent.example.chat.memory.support.WindowedChatMemory;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.InMemoryChatMemory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -26,8 +27,14 @@ public class Config {
         );
     }
 
+    /**
+     * 每次最多带4000个token的历史
+     */
     @Bean
     public ChatMemory chatMemory() {
-        return new InMemoryChatMemory();
+        return WindowedChatMemory.builder()
+                .delegate(BoundedInMemoryChatMemory.builder().build())
+                .maxTokens(4000)
+                .build();
     }
 }
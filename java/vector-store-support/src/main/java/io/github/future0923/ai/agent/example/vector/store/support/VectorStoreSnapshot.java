@@ -0,0 +1,189 @@
+package io.github.future0923.ai.agent.example.vector.store.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.DocumentTransformer;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.reader.TextReader;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 带磁盘快照的SimpleVectorStore
+ * <p>
+ * 快照文件名带上源文件内容（和fingerprint）的SHA-256，启动时有对应快照就直接加载，不调用向量模型；
+ * 没有快照或源文件改了才重新切分、向量化，并写入新快照。
+ * <li>快照先写临时文件再原子替换，写到一半退出不会留下损坏的快照
+ * <li>快照损坏或写入失败只打日志，退回到重新向量化
+ * <li>fingerprint用来区分向量模型、切分方式，换模型后不会加载到旧模型的向量
+ * <li>快照可以在构建或部署时提前生成好放进目录，首次启动也不需要向量化
+ *
+ * @author future0923
+ */
+public class VectorStoreSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorStoreSnapshot.class);
+
+    private final EmbeddingModel embeddingModel;
+
+    private final Resource source;
+
+    private final Path directory;
+
+    private final DocumentTransformer splitter;
+
+    private final String fingerprint;
+
+    private VectorStoreSnapshot(Builder builder) {
+        Assert.notNull(builder.embeddingModel, "embeddingModel cannot be null");
+        Assert.notNull(builder.source, "source cannot be null");
+        Assert.notNull(builder.directory, "directory cannot be null");
+        Assert.notNull(builder.splitter, "splitter cannot be null");
+        Assert.notNull(builder.fingerprint, "fingerprint cannot be null");
+        this.embeddingModel = builder.embeddingModel;
+        this.source = builder.source;
+        this.directory = builder.directory;
+        this.splitter = builder.splitter;
+        this.fingerprint = builder.fingerprint;
+    }
+
+    /**
+     * 加载快照，快照不存在或已过期时重新向量化并保存
+     */
+    public SimpleVectorStore load() {
+        Path snapshot = directory.resolve(prefix() + hash() + ".json");
+        if (Files.isRegularFile(snapshot)) {
+            SimpleVectorStore vectorStore = SimpleVectorStore.builder(embeddingModel).build();
+            try {
+                vectorStore.load(snapshot.toFile());
+                logger.info("Loaded vector store snapshot {}", snapshot);
+                return vectorStore;
+            } catch (RuntimeException e) {
+                logger.warn("Failed to load vector store snapshot {}, rebuilding", snapshot, e);
+            }
+        }
+        SimpleVectorStore vectorStore = SimpleVectorStore.builder(embeddingModel).build();
+        List<Document> documents = splitter.apply(new TextReader(source).read());
+        vectorStore.add(documents);
+        logger.info("Embedded {} chunks of {}", documents.size(), source);
+        save(vectorStore, snapshot);
+        return vectorStore;
+    }
+
+    private void save(SimpleVectorStore vectorStore, Path snapshot) {
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, prefix(), ".tmp");
+            try {
+                vectorStore.save(temp.toFile());
+                Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            logger.info("Saved vector store snapshot {}", snapshot);
+            deleteStale(snapshot);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to save vector store snapshot {}", snapshot, e);
+        }
+    }
+
+    /**
+     * 删除同一源文件的旧快照
+     */
+    private void deleteStale(Path snapshot) throws IOException {
+        Pattern pattern = Pattern.compile(Pattern.quote(prefix()) + "[0-9a-f]{64}\\.json");
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (!file.equals(snapshot) && pattern.matcher(file.getFileName().toString()).matches()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private String prefix() {
+        String filename = source.getFilename();
+        return (StringUtils.hasText(filename) ? StringUtils.stripFilenameExtension(filename) : "snapshot") + "-";
+    }
+
+    private String hash() {
+        try (InputStream in = source.getInputStream()) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(in.readAllBytes());
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + source, e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static VectorStoreSnapshot.Builder builder() {
+        return new VectorStoreSnapshot.Builder();
+    }
+
+    public static final class Builder {
+
+        private EmbeddingModel embeddingModel;
+
+        // 源文件
+        private Resource source;
+
+        // 快照目录
+        private Path directory;
+
+        private DocumentTransformer splitter = new TokenTextSplitter();
+
+        // 参与快照hash的额外内容，如向量模型名称，变化后重新向量化
+        private String fingerprint = "";
+
+        public VectorStoreSnapshot.Builder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        public VectorStoreSnapshot.Builder source(Resource source) {
+            this.source = source;
+            return this;
+        }
+
+        public VectorStoreSnapshot.Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        public VectorStoreSnapshot.Builder splitter(DocumentTransformer splitter) {
+            this.splitter = splitter;
+            return this;
+        }
+
+        public VectorStoreSnapshot.Builder fingerprint(String fingerprint) {
+            this.fingerprint = fingerprint;
+            return this;
+        }
+
+        public VectorStoreSnapshot build() {
+            return new VectorStoreSnapshot(this);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.future0923.ai.agent.example.vector.store.support;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.core.io.FileSystemResource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author future0923
+ */
+public class VectorStoreSnapshotTest {
+
+    @TempDir
+    private Path temp;
+
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+
+    private Path source;
+
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        when(embeddingModel.embed(any(Document.class))).thenReturn(new float[]{1, 0});
+        when(embeddingModel.embed(anyString())).thenReturn(new float[]{1, 0});
+        source = temp.resolve("terms-of-service.txt");
+        Files.writeString(source, "退票需要在起飞前24小时申请");
+        directory = temp.resolve("snapshot");
+    }
+
+    @Test
+    public void secondLoadUsesSnapshot() throws Exception {
+        snapshot("").load();
+        verify(embeddingModel, times(1)).embed(any(Document.class));
+        SimpleVectorStore vectorStore = snapshot("").load();
+        // 加载快照不调用向量模型
+        verify(embeddingModel, times(1)).embed(any(Document.class));
+        List<Document> documents = vectorStore.similaritySearch(SearchRequest.builder().query("退票").build());
+        assertEquals(1, documents.size());
+        assertEquals("退票需要在起飞前24小时申请", documents.get(0).getText());
+        assertEquals(1, snapshots().size());
+    }
+
+    @Test
+    public void changedSourceRebuildsAndDeletesStaleSnapshot() throws Exception {
+        snapshot("").load();
+        List<Path> before = snapshots();
+        Files.writeString(source, "改签需要在起飞前2小时申请");
+        SimpleVectorStore vectorStore = snapshot("").load();
+        verify(embeddingModel, times(2)).embed(any(Document.class));
+        assertEquals("改签需要在起飞前2小时申请", vectorStore.similaritySearch(SearchRequest.builder().query("改签").build()).get(0).getText());
+        List<Path> after = snapshots();
+        assertEquals(1, after.size());
+        assertNotEquals(before, after);
+    }
+
+    @Test
+    public void changedFingerprintRebuilds() {
+        snapshot("text-embedding-v1").load();
+        snapshot("text-embedding-v2").load();
+        verify(embeddingModel, times(2)).embed(any(Document.class));
+    }
+
+    @Test
+    public void corruptSnapshotRebuilds() throws Exception {
+        snapshot("").load();
+        Files.writeString(snapshots().get(0), "{");
+        SimpleVectorStore vectorStore = snapshot("").load();
+        verify(embeddingModel, times(2)).embed(any(Document.class));
+        assertEquals(1, vectorStore.similaritySearch(SearchRequest.builder().query("退票").build()).size());
+    }
+
+    private VectorStoreSnapshot snapshot(String fingerprint) {
+        return VectorStoreSnapshot.builder()
+                .embeddingModel(embeddingModel)
+                .source(new FileSystemResource(source))
+                .directory(directory)
+                .fingerprint(fingerprint)
+                .build();
+    }
+
+    private List<Path> snapshots() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+}
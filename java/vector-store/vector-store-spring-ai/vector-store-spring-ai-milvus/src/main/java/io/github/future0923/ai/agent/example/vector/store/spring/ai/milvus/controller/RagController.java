@@ -1,5 +1,7 @@
 package io.github.future0923.ai.agent.example.vector.store.spring.ai.milvus.controller;
 
+import io.github.future0923.ai.agent.example.chat.memory.support.BoundedInMemoryChatMemory;
+import io.github.future0923.ai.agent.example.chat.memory.support.WindowedChatMemory;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.ai.autoconfigure.vectorstore.milvus.MilvusVectorStoreAutoConfiguration;
 import org.springframework.ai.chat.client.ChatClient;
@@ -7,7 +9,6 @@ import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.QuestionAnswerAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.InMemoryChatMemory;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
@@ -40,7 +41,11 @@ public class RagController {
     public RagController(MilvusVectorStore vectorStore, ChatClient.Builder builder) {
         this.vectorStore = vectorStore;
         this.builder = builder;
-        this.chatMemory = new InMemoryChatMemory();
+        // 每次最多带4000个token的历史
+        this.chatMemory = WindowedChatMemory.builder()
+                .delegate(BoundedInMemoryChatMemory.builder().build())
+                .maxTokens(4000)
+                .build();
     }
 
     @GetMapping("/chat")
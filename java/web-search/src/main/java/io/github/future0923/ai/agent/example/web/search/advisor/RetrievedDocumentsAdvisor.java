@@ -0,0 +1,48 @@
+package io.github.future0923.ai.agent.example.web.search.advisor;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.ai.chat.client.advisor.RetrievalAugmentationAdvisor;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.BaseAdvisor;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 取出RetrievalAugmentationAdvisor检索到的文档，需要排在RetrievalAugmentationAdvisor之后。没有检索结果时传入空列表
+ *
+ * @author future0923
+ */
+public class RetrievedDocumentsAdvisor implements BaseAdvisor {
+
+    private final Consumer<List<Document>> consumer;
+
+    private final int order;
+
+    public RetrievedDocumentsAdvisor(Consumer<List<Document>> consumer, int order) {
+        this.consumer = consumer;
+        this.order = order;
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public AdvisedRequest before(@NotNull AdvisedRequest request) {
+        Object documents = request.adviseContext().get(RetrievalAugmentationAdvisor.DOCUMENT_CONTEXT);
+        consumer.accept(documents instanceof List<?> list ? (List<Document>) list : List.of());
+        return request;
+    }
+
+    @NotNull
+    @Override
+    public AdvisedResponse after(@NotNull AdvisedResponse advisedResponse) {
+        return advisedResponse;
+    }
+
+    @Override
+    public int getOrder() {
+        return this.order;
+    }
+}
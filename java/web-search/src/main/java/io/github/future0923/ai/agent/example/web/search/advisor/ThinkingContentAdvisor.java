@@ -5,17 +5,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
 import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
 import org.springframework.ai.chat.client.advisor.api.BaseAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
-import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
  * 返回思考内容，返回格式<think>%s</think>为内容
+ * <p>
+ * 流式调用时每个订阅单独记录状态，第一个思考片段前和第一个正文片段前各插入一个只有{@code <think>}、{@code </think>}的标记片段，
+ * 没有正文直接结束时补一个{@code </think>}标记片段。模型返回的片段原样透传，思考内容只在reasoningContent元数据中，不写进text，
+ * 用{@link #content(ChatResponse)}读取片段的输出内容；只有思考和正文在同一个片段中时才拆成两个片段。
+ * <p>
+ * 默认顺序{@link #DEFAULT_ORDER}在聊天记忆之外，记忆和日志看到的是模型原始的片段，只保存正文
  *
  * @author future0923
  */
@@ -23,10 +35,21 @@ public class ThinkingContentAdvisor implements BaseAdvisor {
 
     private static final Logger logger = LoggerFactory.getLogger(ThinkingContentAdvisor.class);
 
+    private static final String REASONING_CONTENT = "reasoningContent";
+
+    private static final String THINK_START = "<think>";
+
+    private static final String THINK_END = "</think>";
+
+    /**
+     * 在聊天记忆之外，思考标签不会进入聊天记忆
+     */
+    public static final int DEFAULT_ORDER = Advisor.DEFAULT_CHAT_MEMORY_PRECEDENCE_ORDER - 1000;
+
     private final int order;
 
     public ThinkingContentAdvisor(Integer order) {
-        this.order = order != null ? order : 0;
+        this.order = order != null ? order : DEFAULT_ORDER;
     }
 
     @NotNull
@@ -35,6 +58,9 @@ public class ThinkingContentAdvisor implements BaseAdvisor {
         return request;
     }
 
+    /**
+     * 非流式调用，完整的思考内容拼在正文前面
+     */
     @NotNull
     @Override
     public AdvisedResponse after(AdvisedResponse advisedResponse) {
@@ -42,24 +68,23 @@ public class ThinkingContentAdvisor implements BaseAdvisor {
         if (Objects.isNull(resp)) {
             return advisedResponse;
         }
-        logger.debug(String.valueOf(resp.getResults().get(0).getOutput().getMetadata()));
-        String reasoningContent = String.valueOf(resp.getResults().get(0).getOutput().getMetadata().get("reasoningContent"));
-        if (StringUtils.hasText(reasoningContent)) {
-            List<Generation> thinkGenerations = resp.getResults().stream()
-                    .map(generation -> {
-                        AssistantMessage output = generation.getOutput();
-                        AssistantMessage thinkAssistantMessage = new AssistantMessage(
-                                String.format("<think>%s</think>", reasoningContent) + output.getText(),
-                                output.getMetadata(),
-                                output.getToolCalls(),
-                                output.getMedia()
-                        );
-                        return new Generation(thinkAssistantMessage, generation.getMetadata());
-                    }).toList();
-            ChatResponse thinkChatResp = ChatResponse.builder().from(resp).generations(thinkGenerations).build();
-            return AdvisedResponse.from(advisedResponse).response(thinkChatResp).build();
+        logger.debug("{}", resp.getResults().get(0).getOutput().getMetadata());
+        String reasoningContent = reasoningContent(resp);
+        if (reasoningContent.isEmpty()) {
+            return advisedResponse;
         }
-        return advisedResponse;
+        return rewrite(advisedResponse, THINK_START + reasoningContent + THINK_END + text(resp), null);
+    }
+
+    @NotNull
+    @Override
+    public Flux<AdvisedResponse> aroundStream(@NotNull AdvisedRequest advisedRequest, @NotNull StreamAroundAdvisorChain chain) {
+        return Flux.defer(() -> {
+            StreamState state = new StreamState();
+            return chain.nextAroundStream(before(advisedRequest))
+                    .concatMapIterable(state::next)
+                    .concatWith(Mono.fromSupplier(state::complete));
+        });
     }
 
     @Override
@@ -67,4 +92,121 @@ public class ThinkingContentAdvisor implements BaseAdvisor {
         return this.order;
     }
 
+    /**
+     * 流式片段的输出内容，原样透传的思考片段返回reasoningContent，其它片段返回text
+     */
+    public static String content(ChatResponse resp) {
+        if (Objects.isNull(resp) || resp.getResults().isEmpty()) {
+            return "";
+        }
+        return reasoningContent(resp) + text(resp);
+    }
+
+    private static String reasoningContent(ChatResponse resp) {
+        Object reasoningContent = resp.getResults().get(0).getOutput().getMetadata().get(REASONING_CONTENT);
+        return reasoningContent instanceof String value ? value : "";
+    }
+
+    private static String text(ChatResponse resp) {
+        String text = resp.getResults().get(0).getOutput().getText();
+        return Objects.isNull(text) ? "" : text;
+    }
+
+    /**
+     * 替换text和思考内容，reasoningContent为空时从元数据中去掉，避免重复输出
+     */
+    private static AdvisedResponse rewrite(AdvisedResponse advisedResponse, String text, String reasoningContent) {
+        ChatResponse resp = advisedResponse.response();
+        List<Generation> thinkGenerations = resp.getResults().stream()
+                .map(generation -> {
+                    AssistantMessage output = generation.getOutput();
+                    Map<String, Object> metadata = new HashMap<>(output.getMetadata());
+                    if (Objects.isNull(reasoningContent)) {
+                        metadata.remove(REASONING_CONTENT);
+                    } else {
+                        metadata.put(REASONING_CONTENT, reasoningContent);
+                    }
+                    AssistantMessage thinkAssistantMessage = new AssistantMessage(
+                            text,
+                            metadata,
+                            output.getToolCalls(),
+                            output.getMedia()
+                    );
+                    return new Generation(thinkAssistantMessage, generation.getMetadata());
+                }).toList();
+        ChatResponse thinkChatResp = ChatResponse.builder().from(resp).generations(thinkGenerations).build();
+        return AdvisedResponse.from(advisedResponse).response(thinkChatResp).build();
+    }
+
+    /**
+     * 只有思考标签的片段
+     */
+    private static AdvisedResponse marker(AdvisedResponse advisedResponse, String tag) {
+        ChatResponse resp = ChatResponse.builder()
+                .from(advisedResponse.response())
+                .generations(List.of(new Generation(new AssistantMessage(tag))))
+                .build();
+        return AdvisedResponse.from(advisedResponse).response(resp).build();
+    }
+
+    /**
+     * 单次流式调用的思考标签状态
+     */
+    private static final class StreamState {
+
+        private boolean thinking;
+
+        private boolean finished;
+
+        private AdvisedResponse last;
+
+        private List<AdvisedResponse> next(AdvisedResponse advisedResponse) {
+            last = advisedResponse;
+            ChatResponse resp = advisedResponse.response();
+            if (finished || Objects.isNull(resp) || resp.getResults().isEmpty()) {
+                return List.of(advisedResponse);
+            }
+            String reasoningContent = reasoningContent(resp);
+            String text = text(resp);
+            if (reasoningContent.isEmpty()) {
+                if (!thinking || text.isEmpty()) {
+                    // 还没开始思考的正文或空片段，原样返回
+                    finished = !text.isEmpty();
+                    return List.of(advisedResponse);
+                }
+                finished = true;
+                return List.of(marker(advisedResponse, THINK_END), advisedResponse);
+            }
+            if (text.isEmpty()) {
+                if (thinking) {
+                    // 中间的思考片段原样透传
+                    return List.of(advisedResponse);
+                }
+                thinking = true;
+                return List.of(marker(advisedResponse, THINK_START), advisedResponse);
+            }
+            // 思考和正文在同一个片段中，拆成思考片段和正文片段
+            List<AdvisedResponse> responses = new ArrayList<>(4);
+            if (!thinking) {
+                responses.add(marker(advisedResponse, THINK_START));
+            }
+            thinking = true;
+            finished = true;
+            responses.add(rewrite(advisedResponse, "", reasoningContent));
+            responses.add(marker(advisedResponse, THINK_END));
+            responses.add(rewrite(advisedResponse, text, null));
+            return responses;
+        }
+
+        /**
+         * 只有思考没有正文时，结束前补上{@code </think>}
+         */
+        private AdvisedResponse complete() {
+            if (!thinking || finished || Objects.isNull(last) || Objects.isNull(last.response())) {
+                return null;
+            }
+            finished = true;
+            return marker(last, THINK_END);
+        }
+    }
 }
@@ -3,6 +3,8 @@ package io.github.future0923.ai.agent.example.web.search.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 /**
  * @author future0923
  */
@@ -12,6 +14,16 @@ public class IQSSearchProperties {
 
     private String apiKey;
 
+    /**
+     * 查询结果缓存
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * 请求IQS的连接池、超时、重试
+     */
+    private Transport transport = new Transport();
+
     public String getApiKey() {
         return apiKey;
     }
@@ -19,4 +31,156 @@ public class IQSSearchProperties {
     public void setApiKey(String apiKey) {
         this.apiKey = apiKey;
     }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    public static class Cache {
+
+        /**
+         * 是否开启缓存
+         */
+        private boolean enabled = true;
+
+        /**
+         * 最大缓存条数
+         */
+        private long maximumSize = 1000;
+
+        /**
+         * 写入后过期时间
+         */
+        private Duration expireAfterWrite = Duration.ofMinutes(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Duration getExpireAfterWrite() {
+            return expireAfterWrite;
+        }
+
+        public void setExpireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+        }
+    }
+
+    public static class Transport {
+
+        /**
+         * 连接池最大连接数
+         */
+        private int maxConnections = 64;
+
+        /**
+         * 连接超时时间
+         */
+        private Duration connectTimeout = Duration.ofSeconds(2);
+
+        /**
+         * 读取超时时间
+         */
+        private Duration readTimeout = Duration.ofSeconds(10);
+
+        /**
+         * 空闲连接保留时间，超过后关闭
+         */
+        private Duration idleTimeout = Duration.ofSeconds(30);
+
+        /**
+         * 是否使用JDK HttpClient的HTTP/2，服务端不支持时自动降级为HTTP/1.1。开启后连接池由JDK管理，不再有连接池指标
+         */
+        private boolean http2 = false;
+
+        /**
+         * 429、5xx时最多重试次数
+         */
+        private int maxRetries = 2;
+
+        /**
+         * 第一次重试的基础等待时间，之后每次翻倍，实际等待时间在0到该值之间随机
+         */
+        private Duration retryBackoff = Duration.ofMillis(200);
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public Duration getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public Duration getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public void setIdleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+        }
+
+        public boolean isHttp2() {
+            return http2;
+        }
+
+        public void setHttp2(boolean http2) {
+            this.http2 = http2;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public Duration getRetryBackoff() {
+            return retryBackoff;
+        }
+
+        public void setRetryBackoff(Duration retryBackoff) {
+            this.retryBackoff = retryBackoff;
+        }
+    }
 }
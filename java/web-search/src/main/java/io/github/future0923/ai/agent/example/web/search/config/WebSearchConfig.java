@@ -2,9 +2,22 @@ package io.github.future0923.ai.agent.example.web.search.config;
 
 import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
 import com.alibaba.cloud.ai.memory.jdbc.MysqlChatMemory;
+import com.alibaba.cloud.ai.model.RerankModel;
+import io.github.future0923.ai.agent.example.chat.memory.support.WindowedChatMemory;
+import io.github.future0923.ai.agent.example.chat.memory.support.WriteBehindChatMemory;
+import io.github.future0923.ai.agent.example.document.ranker.DashScopeDocumentRanker;
+import io.github.future0923.ai.agent.example.document.ranker.HedgedDocumentRanker;
+import io.github.future0923.ai.agent.example.document.ranker.LexicalDocumentRanker;
+import io.github.future0923.ai.agent.example.web.search.metrics.TimedChatMemory;
+import io.github.future0923.ai.agent.example.web.search.metrics.WebSearchMetrics;
+import io.github.future0923.ai.agent.example.web.search.metrics.WebSearchStageEndpoint;
+import io.github.future0923.ai.agent.example.web.search.rag.ConcatenationDocumentJoiner;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.ai.rag.postretrieval.ranking.DocumentRanker;
+import org.springframework.ai.rag.retrieval.join.DocumentJoiner;
 import org.springframework.ai.rag.generation.augmentation.ContextualQueryAugmenter;
 import org.springframework.ai.rag.generation.augmentation.QueryAugmenter;
 import org.springframework.ai.rag.preretrieval.query.expansion.MultiQueryExpander;
@@ -14,6 +27,11 @@ import org.springframework.ai.rag.preretrieval.query.transformation.RewriteQuery
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
 
 /**
  * @author future0923
@@ -28,50 +46,132 @@ public class WebSearchConfig {
     @Bean
     public QueryTransformer queryTransformer(
             ChatClient.Builder chatClientBuilder,
-            @Qualifier("transformerPromptTemplate") PromptTemplate transformerPromptTemplate
+            @Qualifier("transformerPromptTemplate") PromptTemplate transformerPromptTemplate,
+            WebSearchMetrics webSearchMetrics
     ) {
         ChatClient chatClient = chatClientBuilder.defaultOptions(
                 DashScopeChatOptions.builder()
                         .withModel("qwen-plus")
                         .build()
         ).build();
-        return RewriteQueryTransformer.builder()
+        QueryTransformer queryTransformer = RewriteQueryTransformer.builder()
                 .chatClientBuilder(chatClient.mutate())
                 .promptTemplate(transformerPromptTemplate)
                 .targetSearchSystem("Web Search")
                 .build();
+        return query -> webSearchMetrics.record("transform", () -> queryTransformer.transform(query));
     }
 
     /**
      * 大型语言模型将查询扩展为多个语义不同的变体，以捕获不同的视角，这对于检索额外的上下文信息和增加找到相关结果的机会很有用。
      */
     @Bean
-    public QueryExpander queryExpander(ChatClient.Builder chatClientBuilder) {
+    public QueryExpander queryExpander(ChatClient.Builder chatClientBuilder, WebSearchMetrics webSearchMetrics) {
 
         ChatClient chatClient = chatClientBuilder.defaultOptions(
                 DashScopeChatOptions.builder()
                         .withModel("qwen-plus")
                         .build()
         ).build();
-        return MultiQueryExpander.builder()
+        QueryExpander queryExpander = MultiQueryExpander.builder()
                 .chatClientBuilder(chatClient.mutate())
                 .numberOfQueries(2)
                 .build();
+        return query -> webSearchMetrics.record("expand", () -> queryExpander.expand(query));
     }
 
     /**
      * ContextualQueryAugmenter使用来自所提供文档内容的上下文数据来扩充用户查询。
      */
     @Bean
-    public QueryAugmenter queryAugmenter(PromptTemplate queryArgumentPromptTemplate) {
-        return new ContextualQueryAugmenter(queryArgumentPromptTemplate, null, true);
+    public QueryAugmenter queryAugmenter(PromptTemplate queryArgumentPromptTemplate, WebSearchMetrics webSearchMetrics) {
+        QueryAugmenter queryAugmenter = new ContextualQueryAugmenter(queryArgumentPromptTemplate, null, true);
+        return (query, documents) -> webSearchMetrics.record("augment", () -> queryAugmenter.augment(query, documents));
+    }
+
+    /**
+     * DocumentJoiner合并多个查询的检索结果
+     */
+    @Bean
+    public DocumentJoiner documentJoiner(WebSearchProperties properties, WebSearchMetrics webSearchMetrics) {
+        DocumentJoiner documentJoiner = ConcatenationDocumentJoiner.builder()
+                .topK(properties.getJoiner().getTopK())
+                .mode(properties.getJoiner().getMode())
+                .build();
+        return documentsForQuery -> webSearchMetrics.record("join", () -> documentJoiner.join(documentsForQuery));
+    }
+
+    /**
+     * DocumentRanker文档重排序，DashScope重排序1秒内没有返回或调用失败时，使用本地BM25重排序的结果
+     */
+    @Bean
+    public DocumentRanker documentRanker(RerankModel rerankModel, @Qualifier("rerankTaskExecutor") TaskExecutor rerankTaskExecutor, WebSearchMetrics webSearchMetrics) {
+        DocumentRanker documentRanker = new HedgedDocumentRanker(
+                new DashScopeDocumentRanker(rerankModel),
+                new LexicalDocumentRanker(),
+                Duration.ofSeconds(1),
+                rerankTaskExecutor
+        );
+        return (query, documents) -> webSearchMetrics.record("rank", () -> documentRanker.rank(query, documents));
+    }
+
+    /**
+     * 远程重排序的线程池，与检索线程池分开，避免互相等待
+     */
+    @Bean
+    public TaskExecutor rerankTaskExecutor() {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setThreadNamePrefix("web-search-rerank-");
+        taskExecutor.setCorePoolSize(4);
+        taskExecutor.setMaxPoolSize(16);
+        taskExecutor.setQueueCapacity(64);
+        taskExecutor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        return taskExecutor;
+    }
+
+    /**
+     * 扩展查询并发检索的线程池，RetrievalAugmentationAdvisor默认每次构建都会新建线程池，这里统一复用一个有界线程池
+     */
+    @Bean
+    public TaskExecutor webSearchTaskExecutor() {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setThreadNamePrefix("web-search-");
+        taskExecutor.setCorePoolSize(8);
+        taskExecutor.setMaxPoolSize(32);
+        taskExecutor.setQueueCapacity(256);
+        taskExecutor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        return taskExecutor;
     }
 
     /**
-     * 基于MySQL的聊天记忆
+     * 基于MySQL的聊天记忆，消息先放入队列，后台批量写入MySQL，关闭应用时写入剩余消息。
+     * 最近的消息缓存在本地，每次最多带4000个token的历史
      */
     @Bean
-    public ChatMemory MysqlChatMemory() {
-        return new MysqlChatMemory("root", "123456Aa", "jdbc:mysql://192.168.0.11:3306/ai-chat-memory");
+    public ChatMemory MysqlChatMemory(WebSearchMetrics webSearchMetrics) {
+        return new TimedChatMemory(
+                WindowedChatMemory.builder()
+                        .delegate(WriteBehindChatMemory.builder()
+                                .delegate(new MysqlChatMemory("root", "123456Aa", "jdbc:mysql://192.168.0.11:3306/ai-chat-memory"))
+                                .maxBatchSize(32)
+                                .flushInterval(Duration.ofSeconds(1))
+                                .build())
+                        .maxTokens(4000)
+                        .build(),
+                webSearchMetrics
+        );
+    }
+
+    /**
+     * 各阶段耗时指标，通过 /actuator/metrics/web.search.stage 或 /actuator/webSearchStages 查看
+     */
+    @Bean
+    public WebSearchMetrics webSearchMetrics(MeterRegistry meterRegistry) {
+        return new WebSearchMetrics(meterRegistry);
+    }
+
+    @Bean
+    public WebSearchStageEndpoint webSearchStageEndpoint(MeterRegistry meterRegistry) {
+        return new WebSearchStageEndpoint(meterRegistry);
     }
 }
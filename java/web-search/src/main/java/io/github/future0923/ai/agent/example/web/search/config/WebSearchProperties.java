@@ -0,0 +1,126 @@
+package io.github.future0923.ai.agent.example.web.search.config;
+
+import io.github.future0923.ai.agent.example.web.search.rag.ConcatenationDocumentJoiner;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * @author future0923
+ */
+@Configuration
+@ConfigurationProperties(prefix = "spring.web.search")
+public class WebSearchProperties {
+
+    /**
+     * 多个查询检索结果的合并
+     */
+    private Joiner joiner = new Joiner();
+
+    /**
+     * 推测检索
+     */
+    private Speculative speculative = new Speculative();
+
+    /**
+     * 同一会话排队等待前一轮结束的最长时间，超时后这一轮直接失败
+     */
+    private Duration maxQueueWait = Duration.ofMinutes(2);
+
+    /**
+     * 单个扩展查询的IQS检索截止时间，包括重试。每次请求的读取超时取spring.iqs.search.transport.read-timeout与剩余时间的较小值，
+     * 重试的等待放不进剩余时间时不再重试，超时的查询直接丢弃
+     */
+    private Duration retrieveTimeout = Duration.ofSeconds(5);
+
+    public Joiner getJoiner() {
+        return joiner;
+    }
+
+    public void setJoiner(Joiner joiner) {
+        this.joiner = joiner;
+    }
+
+    public Speculative getSpeculative() {
+        return speculative;
+    }
+
+    public void setSpeculative(Speculative speculative) {
+        this.speculative = speculative;
+    }
+
+    public Duration getMaxQueueWait() {
+        return maxQueueWait;
+    }
+
+    public void setMaxQueueWait(Duration maxQueueWait) {
+        this.maxQueueWait = maxQueueWait;
+    }
+
+    public Duration getRetrieveTimeout() {
+        return retrieveTimeout;
+    }
+
+    public void setRetrieveTimeout(Duration retrieveTimeout) {
+        this.retrieveTimeout = retrieveTimeout;
+    }
+
+    public static class Joiner {
+
+        /**
+         * 合并后最多保留的文档数
+         */
+        private int topK = 10;
+
+        /**
+         * 合并方式
+         */
+        private ConcatenationDocumentJoiner.Mode mode = ConcatenationDocumentJoiner.Mode.CONCATENATION;
+
+        public int getTopK() {
+            return topK;
+        }
+
+        public void setTopK(int topK) {
+            this.topK = topK;
+        }
+
+        public ConcatenationDocumentJoiner.Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(ConcatenationDocumentJoiner.Mode mode) {
+            this.mode = mode;
+        }
+    }
+
+    public static class Speculative {
+
+        /**
+         * 是否在查询重写、扩展的同时先检索用户原始问题
+         */
+        private boolean enabled = false;
+
+        /**
+         * 查询与原始问题的编辑距离相似度不低于该值时，复用原始问题的检索结果
+         */
+        private double similarityThreshold = 0.85;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getSimilarityThreshold() {
+            return similarityThreshold;
+        }
+
+        public void setSimilarityThreshold(double similarityThreshold) {
+            this.similarityThreshold = similarityThreshold;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package io.github.future0923.ai.agent.example.web.search.controller;
 
 import io.github.future0923.ai.agent.example.web.search.search.WebSearchService;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -32,4 +34,16 @@ public class WebSearchController {
         }
         return webSearchService.chat(query, chatId);
     }
+
+    /**
+     * SSE流式回答，事件类型见 {@link WebSearchService#stream(String, String)}
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> stream(@RequestParam("query") String query,
+                                                @RequestParam(value = "chatId", defaultValue = "ai") String chatId) {
+        if (!StringUtils.hasText(query)) {
+            return Flux.just(ServerSentEvent.builder((Object) "输入非法").event("error").build());
+        }
+        return webSearchService.stream(query, chatId);
+    }
 }
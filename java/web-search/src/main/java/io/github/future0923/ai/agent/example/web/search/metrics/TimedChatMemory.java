@@ -0,0 +1,53 @@
+package io.github.future0923.ai.agent.example.web.search.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * 记录聊天记忆读写耗时，stage为memory.get、memory.add、memory.clear。关闭时一并关闭被代理的ChatMemory
+ *
+ * @author future0923
+ */
+public class TimedChatMemory implements ChatMemory, AutoCloseable {
+
+    private final ChatMemory delegate;
+
+    private final WebSearchMetrics metrics;
+
+    public TimedChatMemory(ChatMemory delegate, WebSearchMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void add(@NotNull String conversationId, @NotNull List<Message> messages) {
+        metrics.record("memory.add", () -> {
+            delegate.add(conversationId, messages);
+            return null;
+        });
+    }
+
+    @NotNull
+    @Override
+    public List<Message> get(@NotNull String conversationId, int lastN) {
+        return metrics.record("memory.get", () -> delegate.get(conversationId, lastN));
+    }
+
+    @Override
+    public void clear(@NotNull String conversationId) {
+        metrics.record("memory.clear", () -> {
+            delegate.clear(conversationId);
+            return null;
+        });
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.future0923.ai.agent.example.web.search.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 联网搜索各阶段耗时
+ * <li>web.search.stage：各阶段耗时，stage为阶段，outcome为success、error、cancel；stage为queue时是同一会话排队等待前一轮结束的耗时
+ * <li>web.search.time.to.first.token：从发起请求到收到大模型第一个片段的耗时，包含检索等前置阶段
+ * <li>web.search.tokens.per.second：大模型输出速度，按流式片段数计算，不含第一个片段前的等待
+ *
+ * @author future0923
+ */
+public class WebSearchMetrics {
+
+    public static final String STAGE = "web.search.stage";
+
+    public static final String TIME_TO_FIRST_TOKEN = "web.search.time.to.first.token";
+
+    public static final String TOKENS_PER_SECOND = "web.search.tokens.per.second";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Timer timeToFirstToken;
+
+    private final DistributionSummary tokensPerSecond;
+
+    public WebSearchMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.timeToFirstToken = Timer.builder(TIME_TO_FIRST_TOKEN)
+                .description("联网搜索首个片段耗时")
+                .register(meterRegistry);
+        this.tokensPerSecond = DistributionSummary.builder(TOKENS_PER_SECOND)
+                .description("联网搜索大模型输出速度")
+                .baseUnit("tokens")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 不记录任何指标
+     */
+    public static WebSearchMetrics noop() {
+        return new WebSearchMetrics(new CompositeMeterRegistry());
+    }
+
+    public MeterRegistry getMeterRegistry() {
+        return meterRegistry;
+    }
+
+    /**
+     * 记录一个同步阶段的耗时，抛出异常时outcome为error
+     */
+    public <T> T record(String stage, Supplier<T> supplier) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = supplier.get();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(timer(stage, outcome));
+        }
+    }
+
+    /**
+     * 记录已经测量好的阶段耗时
+     */
+    public void record(String stage, Duration duration) {
+        timer(stage, "success").record(duration);
+    }
+
+    /**
+     * 记录流式回答的首个片段耗时、输出速度，以及整个流（stage为stream）的耗时
+     */
+    public <T> Flux<T> recordStream(Flux<T> stream) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicLong firstChunk = new AtomicLong();
+            AtomicLong chunks = new AtomicLong();
+            return stream
+                    .doOnNext(chunk -> {
+                        if (chunks.getAndIncrement() == 0) {
+                            long now = System.nanoTime();
+                            firstChunk.set(now);
+                            timeToFirstToken.record(now - start, TimeUnit.NANOSECONDS);
+                        }
+                    })
+                    .doFinally(signal -> {
+                        long end = System.nanoTime();
+                        timer("stream", outcome(signal)).record(end - start, TimeUnit.NANOSECONDS);
+                        long count = chunks.get();
+                        if (count > 1 && end > firstChunk.get()) {
+                            tokensPerSecond.record((count - 1) * 1e9 / (end - firstChunk.get()));
+                        }
+                    });
+        });
+    }
+
+    private Timer timer(String stage, String outcome) {
+        return Timer.builder(STAGE)
+                .description("联网搜索各阶段耗时")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static String outcome(SignalType signal) {
+        return switch (signal) {
+            case ON_COMPLETE -> "success";
+            case CANCEL -> "cancel";
+            default -> "error";
+        };
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.future0923.ai.agent.example.web.search.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /actuator/webSearchStages，汇总各阶段耗时（毫秒），不需要外部链路追踪系统就能看到耗时分布
+ *
+ * @author future0923
+ */
+@Endpoint(id = "webSearchStages")
+public class WebSearchStageEndpoint {
+
+    private final MeterRegistry meterRegistry;
+
+    public WebSearchStageEndpoint(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stages() {
+        Map<String, Object> stages = new TreeMap<>();
+        for (Timer timer : meterRegistry.find(WebSearchMetrics.STAGE).timers()) {
+            stages.put(timer.getId().getTag("stage") + "." + timer.getId().getTag("outcome"), summary(timer));
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("stages", stages);
+        Timer timeToFirstToken = meterRegistry.find(WebSearchMetrics.TIME_TO_FIRST_TOKEN).timer();
+        if (Objects.nonNull(timeToFirstToken)) {
+            result.put("timeToFirstToken", summary(timeToFirstToken));
+        }
+        DistributionSummary tokensPerSecond = meterRegistry.find(WebSearchMetrics.TOKENS_PER_SECOND).summary();
+        if (Objects.nonNull(tokensPerSecond)) {
+            result.put("tokensPerSecond", Map.of(
+                    "count", tokensPerSecond.count(),
+                    "mean", tokensPerSecond.mean(),
+                    "max", tokensPerSecond.max()
+            ));
+        }
+        return result;
+    }
+
+    private Map<String, Object> summary(Timer timer) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", timer.count());
+        summary.put("totalMs", timer.totalTime(TimeUnit.MILLISECONDS));
+        summary.put("meanMs", timer.mean(TimeUnit.MILLISECONDS));
+        summary.put("maxMs", timer.max(TimeUnit.MILLISECONDS));
+        return summary;
+    }
+}
@@ -7,109 +7,255 @@ import org.springframework.ai.document.Document;
 import org.springframework.ai.rag.Query;
 import org.springframework.ai.rag.retrieval.join.DocumentJoiner;
 import org.springframework.lang.Nullable;
-import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * 合并文档
+ * <li>CONCATENATION：按查询平均分配名额，依次拼接各查询的文档
+ * <li>RECIPROCAL_RANK_FUSION：按倒数排名融合（RRF）打分，同一文档在多个查询中出现时分数累加，去重后取分数最高的前topK个
+ * <p>
+ * 查询按文本排序后处理，结果顺序稳定；按id、source、file_name、link去重
  *
  * @author future0923
  */
-@Component
 public class ConcatenationDocumentJoiner implements DocumentJoiner {
 
     private static final Logger logger = LoggerFactory.getLogger(ConcatenationDocumentJoiner.class);
 
+    public enum Mode {
+        CONCATENATION, RECIPROCAL_RANK_FUSION
+    }
+
+    /**
+     * 分数从高到低，分数相同时先出现的优先
+     */
+    private static final Comparator<Candidate> RANKING = Comparator.<Candidate>comparingDouble(candidate -> candidate.score).reversed()
+            .thenComparingInt(candidate -> candidate.order);
+
+    private final int topK;
+
+    private final Mode mode;
+
+    private final int rankConstant;
+
+    private ConcatenationDocumentJoiner(Builder builder) {
+        Assert.isTrue(builder.topK > 0, "topK must be greater than 0");
+        Assert.notNull(builder.mode, "mode cannot be null");
+        this.topK = builder.topK;
+        this.mode = builder.mode;
+        this.rankConstant = builder.rankConstant;
+    }
+
     @NotNull
     @Override
     public List<Document> join(@Nullable Map<Query, List<List<Document>>> documentsForQuery) {
         Assert.notNull(documentsForQuery, "documentsForQuery cannot be null");
         Assert.noNullElements(documentsForQuery.keySet(), "documentsForQuery cannot contain null keys");
         Assert.noNullElements(documentsForQuery.values(), "documentsForQuery cannot contain null values");
-        logger.debug("Joining documents by concatenation");
-        Map<Query, List<List<Document>>> selectDocuments = selectDocuments(documentsForQuery, 10);
-        Set<String> seen = new HashSet<>();
-        return selectDocuments.values().stream()
-                .flatMap(List::stream)
-                .flatMap(List::stream)
-                .filter(doc -> {
-                    List<String> keys = extractKeys(doc);
-                    for (String key : keys) {
-                        if (!seen.add(key)) {
-                            logger.info("Duplicate document metadata: {}", doc.getMetadata());
-                            return false;
-                        }
-                    }
-                    // All keys are unique.
-                    return true;
-                })
-                .collect(Collectors.toList());
+        logger.debug("Joining documents by {}", mode);
+        if (documentsForQuery.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Query> sortedQueries = new ArrayList<>(documentsForQuery.keySet());
+        sortedQueries.sort(Comparator.comparing(Query::text));
+        return mode == Mode.RECIPROCAL_RANK_FUSION
+                ? reciprocalRankFusion(documentsForQuery, sortedQueries)
+                : concatenation(documentsForQuery, sortedQueries);
     }
 
-    private Map<Query, List<List<Document>>> selectDocuments(
-            Map<Query, List<List<Document>>> documentsForQuery,
-            int totalDocuments
-    ) {
-        Map<Query, List<List<Document>>> selectDocumentsForQuery = new HashMap<>();
-        int numberOfQueries = documentsForQuery.size();
-        if (Objects.equals(0, numberOfQueries)) {
-            return selectDocumentsForQuery;
-        }
-        int baseCount = totalDocuments / numberOfQueries;
-        int remainder = totalDocuments % numberOfQueries;
-        // To ensure consistent distribution. sort the keys (optional)
-        List<Query> sortedQueries = new ArrayList<>(documentsForQuery.keySet());
-        // Other sort
-        // sortedQueries.sort(Comparator.comparing(Query::getSomeProperty));
+    private List<Document> concatenation(Map<Query, List<List<Document>>> documentsForQuery, List<Query> sortedQueries) {
+        int numberOfQueries = sortedQueries.size();
+        int baseCount = topK / numberOfQueries;
+        int remainder = topK % numberOfQueries;
+        SeenKeys seen = new SeenKeys();
+        List<Document> documents = new ArrayList<>(topK);
         for (int i = 0; i < numberOfQueries; i++) {
-            Query query = sortedQueries.get(i);
-            int documentToSelect = baseCount + (i < remainder ? 1 : 0);
-            List<List<Document>> originalDocuments = documentsForQuery.get(query);
-            List<List<Document>> selectedNestLists = new ArrayList<>();
-            int remainingDocuments = documentToSelect;
-            for (List<Document> documentList : originalDocuments) {
-                if (remainingDocuments <= 0) {
-                    break;
-                }
-                List<Document> selectSubList = new ArrayList<>();
-                for (Document docs : documentList) {
+            int remainingDocuments = baseCount + (i < remainder ? 1 : 0);
+            for (List<Document> documentList : documentsForQuery.get(sortedQueries.get(i))) {
+                for (Document document : documentList) {
                     if (remainingDocuments <= 0) {
                         break;
                     }
-                    selectSubList.add(docs);
-                    remainingDocuments--;
+                    // 重复的文档不占用名额
+                    if (seen.add(document)) {
+                        documents.add(document);
+                        remainingDocuments--;
+                    }
+                }
+            }
+        }
+        return documents;
+    }
+
+    private List<Document> reciprocalRankFusion(Map<Query, List<List<Document>>> documentsForQuery, List<Query> sortedQueries) {
+        Map<String, Candidate> candidates = new HashMap<>();
+        for (Query query : sortedQueries) {
+            for (List<Document> documentList : documentsForQuery.get(query)) {
+                for (int rank = 0; rank < documentList.size(); rank++) {
+                    Document document = documentList.get(rank);
+                    double score = 1.0 / (rankConstant + rank + 1);
+                    candidates.computeIfAbsent(fusionKey(document), key -> new Candidate(document, candidates.size())).score += score;
                 }
-                if (!selectSubList.isEmpty()) {
-                    selectedNestLists.add(selectSubList);
+            }
+        }
+        // 每轮用有界堆取出还差的名额数个分数最高的候选，按顺序去重，去重丢掉的名额从下一轮（分数更低的候选）补上
+        List<Candidate> remaining = new ArrayList<>(candidates.values());
+        SeenKeys seen = new SeenKeys();
+        List<Document> documents = new ArrayList<>(Math.min(topK, remaining.size()));
+        Candidate last = null;
+        while (documents.size() < topK) {
+            List<Candidate> batch = top(remaining, topK - documents.size(), last);
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (Candidate candidate : batch) {
+                if (seen.add(candidate.document)) {
+                    documents.add(candidate.document.mutate().score(candidate.score).build());
                 }
             }
-            selectDocumentsForQuery.put(query, selectedNestLists);
+            last = batch.get(batch.size() - 1);
+        }
+        return documents;
+    }
+
+    /**
+     * 排在after之后的候选中分数最高的n个，从高到低排列。堆中最多n个候选，堆顶是其中最差的
+     */
+    private static List<Candidate> top(List<Candidate> candidates, int n, @Nullable Candidate after) {
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(n + 1, RANKING.reversed());
+        for (Candidate candidate : candidates) {
+            if (Objects.nonNull(after) && RANKING.compare(candidate, after) <= 0) {
+                continue;
+            }
+            heap.offer(candidate);
+            if (heap.size() > n) {
+                heap.poll();
+            }
+        }
+        List<Candidate> top = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            top.add(heap.poll());
+        }
+        Collections.reverse(top);
+        return top;
+    }
+
+    /**
+     * 同一网页、文件在不同查询中id不同，优先使用source、file_name、link识别
+     */
+    private String fusionKey(Document document) {
+        Map<String, Object> metadata = document.getMetadata();
+        if (metadata.get("source") instanceof String source) {
+            return "SOURCE:" + source;
+        }
+        if (metadata.get("file_name") instanceof String fileName) {
+            return "FILE_NAME:" + fileName;
+        }
+        if (metadata.get("link") instanceof String link) {
+            return "LINK:" + link;
+        }
+        return document.getId();
+    }
+
+    public static ConcatenationDocumentJoiner.Builder builder() {
+        return new ConcatenationDocumentJoiner.Builder();
+    }
+
+    private static final class Candidate {
+
+        private final Document document;
+
+        private final int order;
+
+        private double score;
+
+        private Candidate(Document document, int order) {
+            this.document = document;
+            this.order = order;
+        }
+    }
+
+    /**
+     * 已选择文档的id、source、file_name、link，任意一个重复即视为重复文档
+     */
+    private static final class SeenKeys {
+
+        private final Set<String> ids = new HashSet<>();
+
+        private final Set<Object> sources = new HashSet<>();
+
+        private final Set<Object> fileNames = new HashSet<>();
+
+        private final Set<Object> links = new HashSet<>();
+
+        private boolean add(Document document) {
+            Map<String, Object> metadata = document.getMetadata();
+            Object source = metadata.get("source") instanceof String value ? value : null;
+            Object fileName = metadata.get("file_name") instanceof String value ? value : null;
+            Object link = metadata.get("link") instanceof String value ? value : null;
+            if (ids.contains(document.getId())
+                    || contains(sources, source)
+                    || contains(fileNames, fileName)
+                    || contains(links, link)) {
+                logger.info("Duplicate document metadata: {}", metadata);
+                return false;
+            }
+            ids.add(document.getId());
+            addIfPresent(sources, source);
+            addIfPresent(fileNames, fileName);
+            addIfPresent(links, link);
+            return true;
+        }
+
+        private static boolean contains(Set<Object> keys, Object key) {
+            return Objects.nonNull(key) && keys.contains(key);
+        }
+
+        private static void addIfPresent(Set<Object> keys, Object key) {
+            if (Objects.nonNull(key)) {
+                keys.add(key);
+            }
         }
-        return selectDocumentsForQuery;
     }
 
-    private List<String> extractKeys(Document document) {
-        List<String> keys = new ArrayList<>();
-        if (Objects.nonNull(document)) {
-            keys.add(document.getId());
+    public static final class Builder {
+
+        // 合并后最多保留的文档数
+        private int topK = 10;
+
+        private Mode mode = Mode.CONCATENATION;
+
+        // RRF常数，越大排名靠后的文档与靠前的分差越小
+        private int rankConstant = 60;
+
+        public ConcatenationDocumentJoiner.Builder topK(int topK) {
+            this.topK = topK;
+            return this;
         }
-        Object src = document.getMetadata().get("source");
-        if (src instanceof String) {
-            keys.add("SOURCE:" + src);
+
+        public ConcatenationDocumentJoiner.Builder mode(Mode mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        public ConcatenationDocumentJoiner.Builder rankConstant(int rankConstant) {
+            this.rankConstant = rankConstant;
+            return this;
         }
-        Object fn = document.getMetadata().get("file_name");
-        if (fn instanceof String) {
-            keys.add("FILE_NAME:" + fn);
+
+        public ConcatenationDocumentJoiner build() {
+            return new ConcatenationDocumentJoiner(this);
         }
-        return keys;
     }
 }
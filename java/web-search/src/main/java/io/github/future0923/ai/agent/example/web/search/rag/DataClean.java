@@ -14,6 +14,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * @author future0923
@@ -21,15 +22,38 @@ import java.util.Objects;
 @Component
 public class DataClean {
 
+    public static final String HOSTNAME = "hostname";
+
+    public static final String HTML_SNIPPET = "htmlSnippet";
+
+    public static final String TITLE = "title";
+
+    public static final String MARKDOWN_TEXT = "markdownText";
+
+    public static final String LINK = "link";
+
+    /**
+     * 默认保留的pageItem元数据，htmlSnippet、markdownText与正文重复且体积大，默认不保留
+     */
+    public static final Set<String> DEFAULT_METADATA_FIELDS = Set.of(HOSTNAME, TITLE, LINK);
+
     public List<Document> getData(GenericSearchResult respData) {
+        return getData(respData, DEFAULT_METADATA_FIELDS);
+    }
+
+    /**
+     * @param metadataFields 需要保留到Document元数据中的pageItem字段
+     */
+    public List<Document> getData(GenericSearchResult respData, Set<String> metadataFields) {
 
         List<Document> documents = new ArrayList<>();
 
-        Map<String, Object> metadata = getQueryMetadata(respData);
+        Map<String, Object> queryMetadata = getQueryMetadata(respData);
 
         for (ScorePageItem pageItem : respData.getPageItems()) {
 
-            Map<String, Object> pageItemMetadata = getPageItemMetadata(pageItem);
+            Map<String, Object> metadata = new HashMap<>(queryMetadata);
+            metadata.putAll(getPageItemMetadata(pageItem, metadataFields));
             Double score = getScore(pageItem);
             String text = getText(pageItem);
 
@@ -38,7 +62,6 @@ public class DataClean {
                 Media media = getMedia(pageItem);
                 Document document = new Document.Builder()
                         .metadata(metadata)
-                        .metadata(pageItemMetadata)
                         .media(media)
                         .score(score)
                         .build();
@@ -49,7 +72,6 @@ public class DataClean {
 
             Document document = new Document.Builder()
                     .metadata(metadata)
-                    .metadata(pageItemMetadata)
                     .text(text)
                     .score(score)
                     .build();
@@ -84,36 +106,28 @@ public class DataClean {
         return docsMetadata;
     }
 
-    private Map<String, Object> getPageItemMetadata(ScorePageItem pageItem) {
+    private Map<String, Object> getPageItemMetadata(ScorePageItem pageItem, Set<String> metadataFields) {
 
         HashMap<String, Object> pageItemMetadata = new HashMap<>();
 
         if (Objects.nonNull(pageItem)) {
 
-            if (Objects.nonNull(pageItem.getHostname())) {
-                pageItemMetadata.put("hostname", pageItem.getHostname());
-            }
-
-            if (Objects.nonNull(pageItem.getHtmlSnippet())) {
-                pageItemMetadata.put("htmlSnippet", pageItem.getHtmlSnippet());
-            }
-
-            if (Objects.nonNull(pageItem.getTitle())) {
-                pageItemMetadata.put("title", pageItem.getTitle());
-            }
-
-            if (Objects.nonNull(pageItem.getMarkdownText())) {
-                pageItemMetadata.put("markdownText", pageItem.getMarkdownText());
-            }
-
-            if (Objects.nonNull(pageItem.getLink())) {
-                pageItemMetadata.put("link", pageItem.getLink());
-            }
+            putIfRetained(pageItemMetadata, metadataFields, HOSTNAME, pageItem.getHostname());
+            putIfRetained(pageItemMetadata, metadataFields, HTML_SNIPPET, pageItem.getHtmlSnippet());
+            putIfRetained(pageItemMetadata, metadataFields, TITLE, pageItem.getTitle());
+            putIfRetained(pageItemMetadata, metadataFields, MARKDOWN_TEXT, pageItem.getMarkdownText());
+            putIfRetained(pageItemMetadata, metadataFields, LINK, pageItem.getLink());
         }
 
         return pageItemMetadata;
     }
 
+    private void putIfRetained(Map<String, Object> metadata, Set<String> metadataFields, String key, Object value) {
+        if (metadataFields.contains(key) && Objects.nonNull(value)) {
+            metadata.put(key, value);
+        }
+    }
+
     private Media getMedia(ScorePageItem pageItem) {
 
         String mime = pageItem.getMime();
@@ -132,18 +146,59 @@ public class DataClean {
 
         if (Objects.nonNull(pageItem.getMainText())) {
 
-            String mainText = pageItem.getMainText();
-
-            mainText = mainText.replaceAll("<[^>]+>", "");
-            mainText = mainText.replaceAll("[\\n\\t\\r]+", " ");
-            mainText = mainText.replaceAll("[\\u200B-\\u200D\\uFEFF]", "");
-
-            return mainText.trim();
+            return sanitize(pageItem.getMainText());
         }
 
         return "";
     }
 
+    /**
+     * 一次遍历完成清洗，结果等同于依次执行：
+     * <li>replaceAll("<[^>]+>", "") 去除HTML标签
+     * <li>replaceAll("[\\n\\t\\r]+", " ") 连续换行、制表符合并为一个空格
+     * <li>replaceAll("[\\u200B-\\u200D\\uFEFF]", "") 去除零宽字符
+     * <li>trim()
+     */
+    static String sanitize(String text) {
+        int length = text.length();
+        StringBuilder builder = new StringBuilder(length);
+        // 上一个输出的字符是否为换行、制表符替换出来的空格，标签被去除后不打断连续的换行
+        boolean inLineBreak = false;
+        // text中最后一个'>'的位置，之后的'<'不可能构成标签
+        int lastTagEnd = text.lastIndexOf('>');
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '<' && i + 1 < lastTagEnd && text.charAt(i + 1) != '>') {
+                // 标签内容至少一个字符
+                i = text.indexOf('>', i + 1) + 1;
+                continue;
+            }
+            if (c == '\n' || c == '\t' || c == '\r') {
+                if (!inLineBreak) {
+                    builder.append(' ');
+                    inLineBreak = true;
+                }
+            } else if (c >= '\u200B' && c <= '\u200D' || c == '\uFEFF') {
+                // 零宽字符在换行替换之后才去除，所以会打断连续的换行
+                inLineBreak = false;
+            } else {
+                builder.append(c);
+                inLineBreak = false;
+            }
+            i++;
+        }
+        int start = 0;
+        int end = builder.length();
+        while (start < end && builder.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && builder.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return builder.substring(start, end);
+    }
+
     public List<Document> limitResults(List<Document> documents, int minResults) {
         int limit = Math.min(documents.size(), minResults);
         return documents.subList(0, limit);
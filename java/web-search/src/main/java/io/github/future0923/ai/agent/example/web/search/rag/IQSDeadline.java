@@ -0,0 +1,73 @@
+package io.github.future0923.ai.agent.example.web.search.rag;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * 单次IQS搜索的截止时间
+ * <p>
+ * 搜索在调用线程上同步执行，请求工厂和重试拦截器从当前线程读取剩余时间：每次请求的读取超时不超过剩余时间，
+ * 重试的等待放不进剩余时间时不再重试，整个搜索（包括重试）不会超过截止时间
+ *
+ * @author future0923
+ */
+final class IQSDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private IQSDeadline() {
+    }
+
+    /**
+     * 在截止时间内执行，timeout为空时不限制。嵌套调用时取较早的截止时间
+     */
+    static <T> T call(Duration timeout, Supplier<T> supplier) {
+        if (Objects.isNull(timeout)) {
+            return supplier.get();
+        }
+        Long previous = DEADLINE.get();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        DEADLINE.set(Objects.isNull(previous) || deadline - previous < 0 ? deadline : previous);
+        try {
+            return supplier.get();
+        } finally {
+            if (Objects.isNull(previous)) {
+                DEADLINE.remove();
+            } else {
+                DEADLINE.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 剩余时间与max取较小值，没有截止时间时返回max，最少1毫秒
+     */
+    static Duration remaining(Duration max) {
+        Long deadline = DEADLINE.get();
+        if (Objects.isNull(deadline)) {
+            return max;
+        }
+        Duration remaining = Duration.ofNanos(Math.max(deadline - System.nanoTime(), 1_000_000));
+        return Objects.nonNull(max) && max.compareTo(remaining) < 0 ? max : remaining;
+    }
+
+    /**
+     * 等待millis后是否还在截止时间内
+     */
+    static boolean allows(long millis) {
+        Long deadline = DEADLINE.get();
+        return Objects.isNull(deadline) || deadline - System.nanoTime() > Duration.ofMillis(millis).toNanos();
+    }
+
+    /**
+     * @throws SocketTimeoutException 已过截止时间，与读取超时一样由RestClient包装为ResourceAccessException
+     */
+    static void check() throws SocketTimeoutException {
+        Long deadline = DEADLINE.get();
+        if (Objects.nonNull(deadline) && deadline - System.nanoTime() <= 0) {
+            throw new SocketTimeoutException("IQS search deadline exceeded");
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.future0923.ai.agent.example.web.search.rag;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * IQS返回429（限流）或5xx时重试，等待时间指数增长并随机抖动，避免同一时刻的请求一起重试。
+ * 有截止时间（{@link IQSDeadline}）时，过了截止时间不再发起请求，重试的等待放不进剩余时间时直接返回最后一次的响应
+ *
+ * @author future0923
+ */
+public class IQSRetryInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(IQSRetryInterceptor.class);
+
+    private final int maxRetries;
+
+    private final long backoffMillis;
+
+    public IQSRetryInterceptor(int maxRetries, Duration backoff) {
+        this.maxRetries = maxRetries;
+        this.backoffMillis = backoff.toMillis();
+    }
+
+    @NotNull
+    @Override
+    public ClientHttpResponse intercept(@NotNull HttpRequest request, @NotNull byte[] body, @NotNull ClientHttpRequestExecution execution) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            IQSDeadline.check();
+            ClientHttpResponse response = execution.execute(request, body);
+            if (attempt >= maxRetries || !shouldRetry(response)) {
+                return response;
+            }
+            long backoff = backoff(attempt);
+            if (!IQSDeadline.allows(backoff)) {
+                logger.warn("IQS responded {}, no time left to retry", response.getStatusCode().value());
+                return response;
+            }
+            logger.warn("IQS responded {}, retry {}/{}", response.getStatusCode().value(), attempt + 1, maxRetries);
+            response.close();
+            sleep(backoff);
+        }
+    }
+
+    private boolean shouldRetry(ClientHttpResponse response) throws IOException {
+        return response.getStatusCode().is5xxServerError()
+                || response.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    private long backoff(int attempt) {
+        long bound = backoffMillis << Math.min(attempt, 10);
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    private void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("IQS retry interrupted");
+        }
+    }
+}
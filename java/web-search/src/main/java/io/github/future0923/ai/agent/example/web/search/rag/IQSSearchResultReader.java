@@ -0,0 +1,68 @@
+package io.github.future0923.ai.agent.example.web.search.rag;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.future0923.ai.agent.example.web.search.dto.websearch.GenericSearchResult;
+import io.github.future0923.ai.agent.example.web.search.dto.websearch.QueryContext;
+import io.github.future0923.ai.agent.example.web.search.dto.websearch.ScorePageItem;
+import io.github.future0923.ai.agent.example.web.search.dto.websearch.SearchInformation;
+import io.github.future0923.ai.agent.example.web.search.exception.ProjectException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式解析IQS返回结果，pageItems只绑定前maxPageItems条，其余条目直接跳过，不会创建mainText、markdownText等大字段
+ *
+ * @author future0923
+ */
+public class IQSSearchResultReader {
+
+    /**
+     * 与RestClient默认的Jackson消息转换器配置一致
+     */
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    public GenericSearchResult read(InputStream body, int maxPageItems) throws IOException {
+        GenericSearchResult result = new GenericSearchResult();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ProjectException("WebSearch返回结果格式错误");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                parser.nextToken();
+                switch (fieldName) {
+                    case "pageItems" -> result.setPageItems(readPageItems(parser, maxPageItems));
+                    case "queryContext" -> result.setQueryContext(objectMapper.readValue(parser, QueryContext.class));
+                    case "searchInformation" -> result.setSearchInformation(objectMapper.readValue(parser, SearchInformation.class));
+                    case "requestId" -> result.setRequestId(parser.getValueAsString());
+                    // sceneItems、weiboItems 等暂未使用
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<ScorePageItem> readPageItems(JsonParser parser, int maxPageItems) throws IOException {
+        List<ScorePageItem> pageItems = new ArrayList<>(Math.max(maxPageItems, 0));
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return pageItems;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (pageItems.size() < maxPageItems) {
+                pageItems.add(objectMapper.readValue(parser, ScorePageItem.class));
+            } else {
+                // 已经够用了，跳过剩余条目
+                parser.skipChildren();
+            }
+        }
+        return pageItems;
+    }
+}
@@ -1,16 +1,44 @@
 package io.github.future0923.ai.agent.example.web.search.rag;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.github.future0923.ai.agent.example.web.search.config.IQSSearchProperties;
 import io.github.future0923.ai.agent.example.web.search.dto.websearch.GenericSearchResult;
 import io.github.future0923.ai.agent.example.web.search.exception.ProjectException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.ai.rag.Query;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClient;
 
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * @author future0923
@@ -22,30 +50,181 @@ public class IQSSearchService {
 
     private static final String BASE_URL = "https://cloud-iqs.aliyuncs.com";
 
-    public IQSSearchService(IQSSearchProperties properties) {
-        this.restClient = RestClient.builder()
+    private static final String TIME_RANGE = "OneWeek";
+
+    /**
+     * 查询结果缓存，key为截断后的查询内容、时间范围和解析条数。未开启时为null
+     * <p>
+     * 用AsyncCache缓存进行中的请求，IQS请求在缓存的compute之外执行，慢请求不会阻塞其它key的写入
+     */
+    private final AsyncCache<SearchKey, GenericSearchResult> cache;
+
+    private final IQSSearchResultReader resultReader = new IQSSearchResultReader();
+
+    /**
+     * @param restClientBuilder Spring Boot自动配置的Builder，带有http.client.requests请求耗时指标
+     */
+    public IQSSearchService(IQSSearchProperties properties, MeterRegistry meterRegistry, RestClient.Builder restClientBuilder) {
+        IQSSearchProperties.Transport transport = properties.getTransport();
+        this.restClient = restClientBuilder
                 .baseUrl(BASE_URL)
+                .requestFactory(requestFactory(transport, meterRegistry))
+                .requestInterceptor(new IQSRetryInterceptor(transport.getMaxRetries(), transport.getRetryBackoff()))
                 .defaultHeaders(httpHeaders -> {
                     httpHeaders.setContentType(MediaType.APPLICATION_JSON);
                     httpHeaders.set("user-agent", String.format("%s/%s; java/%s; platform/%s; processor/%s", "SpringAiAlibabaPlayground", "1.0.0", System.getProperty("java.version"), System.getProperty("os.name"), System.getProperty("os.arch")));
                     httpHeaders.set("X-API-Key", properties.getApiKey());
                 })
                 .build();
+        IQSSearchProperties.Cache cacheProperties = properties.getCache();
+        if (cacheProperties.isEnabled()) {
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(cacheProperties.getMaximumSize())
+                    .expireAfterWrite(cacheProperties.getExpireAfterWrite())
+                    .recordStats()
+                    .buildAsync();
+            // 暴露 cache.gets{result=hit|miss}、cache.evictions 等指标
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "iqsSearch");
+        } else {
+            this.cache = null;
+        }
+    }
+
+    /**
+     * 默认使用Apache HttpClient连接池，自动gzip解压，连接池使用情况通过httpcomponents.httpclient.pool.*指标暴露；
+     * 开启http2时使用JDK HttpClient
+     */
+    private ClientHttpRequestFactory requestFactory(IQSSearchProperties.Transport transport, MeterRegistry meterRegistry) {
+        if (transport.isHttp2()) {
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(transport.getConnectTimeout())
+                    .build();
+            // 读取超时是工厂级别的，每次请求按剩余时间新建一个工厂（只包装同一个HttpClient）
+            return (uri, httpMethod) -> {
+                JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+                requestFactory.setReadTimeout(IQSDeadline.remaining(transport.getReadTimeout()));
+                return requestFactory.createRequest(uri, httpMethod);
+            };
+        }
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(transport.getMaxConnections())
+                // 只访问IQS一个域名，单路由可以用满整个连接池
+                .setMaxConnPerRoute(transport.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(transport.getConnectTimeout()))
+                        .setSocketTimeout(Timeout.of(transport.getReadTimeout()))
+                        .setTimeToLive(TimeValue.of(transport.getIdleTimeout()))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "iqsSearch").bindTo(meterRegistry);
+        return new HttpComponentsClientHttpRequestFactory(
+                HttpClients.custom()
+                        .setConnectionManager(connectionManager)
+                        .evictIdleConnections(TimeValue.of(transport.getIdleTimeout()))
+                        // 重试由IQSRetryInterceptor负责
+                        .disableAutomaticRetries()
+                        .build()
+        ) {
+            /**
+             * 每次请求（包括重试）的读取超时和从连接池获取连接的等待时间都不超过截止时间的剩余时间
+             */
+            @Override
+            protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+                Timeout timeout = Timeout.of(IQSDeadline.remaining(transport.getReadTimeout()));
+                HttpClientContext context = HttpClientContext.create();
+                context.setRequestConfig(RequestConfig.custom()
+                        .setResponseTimeout(timeout)
+                        .setConnectionRequestTimeout(timeout)
+                        .build());
+                return context;
+            }
+        };
+    }
+
+    /**
+     * 搜索
+     *
+     * @param query        查询内容
+     * @param maxPageItems 最多解析的pageItems条数
+     */
+    public GenericSearchResult search(Query query, int maxPageItems) {
+        return search(query, maxPageItems, null);
+    }
+
+    /**
+     * 带截止时间的搜索，在调用线程上执行。每次请求的读取超时不超过剩余时间，过了截止时间不再重试，
+     * 超时抛出{@link ResourceAccessException}（cause为{@link SocketTimeoutException}），与传输层的读取超时一致
+     *
+     * @param query        查询内容
+     * @param maxPageItems 最多解析的pageItems条数
+     * @param timeout      截止时间，为空时只受传输层的超时和重试次数限制
+     */
+    public GenericSearchResult search(Query query, int maxPageItems, Duration timeout) {
+        return IQSDeadline.call(timeout, () -> cachedSearch(query, maxPageItems, timeout));
     }
 
-    public GenericSearchResult search(Query query) {
-        // 搜索
-        ResponseEntity<GenericSearchResult> response = restClient.get()
+    private GenericSearchResult cachedSearch(Query query, int maxPageItems, Duration timeout) {
+        SearchKey key = new SearchKey(normalize(query.text()), TIME_RANGE, maxPageItems);
+        if (Objects.isNull(cache)) {
+            return doSearch(key);
+        }
+        // 相同key并发未命中时只会有一个线程真正发起请求，其它线程等待其结果
+        CompletableFuture<GenericSearchResult> loading = new CompletableFuture<>();
+        CompletableFuture<GenericSearchResult> result = cache.get(key, (k, executor) -> loading);
+        if (result == loading) {
+            // 在调用线程上请求，失败（包括超时）的结果不会被缓存
+            try {
+                loading.complete(doSearch(key));
+            } catch (Throwable e) {
+                // 包括Error，保证等待的线程都能结束
+                loading.completeExceptionally(e);
+            }
+        }
+        try {
+            // 等待其它线程的请求时同样不超过自己的截止时间
+            return Objects.isNull(timeout) ? result.join() : result.get(IQSDeadline.remaining(null).toNanos(), TimeUnit.NANOSECONDS);
+        } catch (CompletionException | ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ResourceAccessException("IQS search timeout", new SocketTimeoutException("IQS search deadline exceeded"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("IQS search interrupted", new InterruptedIOException());
+        }
+    }
+
+    private GenericSearchResult doSearch(SearchKey key) {
+        // 搜索，边读边解析，不把整个响应绑定成对象
+        return restClient.get()
                 .uri(
                         "/search/genericSearch?query={query}&timeRange={timeRange}",
-                        query.text().length() >= 100 ? query.text().substring(0, 99) : query.text(),
-                        "OneWeek"
+                        key.query(),
+                        key.timeRange()
                 )
-                .retrieve()
-                .toEntity(GenericSearchResult.class);
-        if ((!Objects.equals(response.getStatusCode(), HttpStatus.OK)) || Objects.isNull(response.getBody())) {
-            throw new ProjectException("查询WebSearch失败");
-        }
-        return response.getBody();
+                .exchange((request, response) -> {
+                    if (!Objects.equals(response.getStatusCode(), HttpStatus.OK)) {
+                        throw new ProjectException("查询WebSearch失败");
+                    }
+                    return resultReader.read(response.getBody(), key.maxPageItems());
+                });
+    }
+
+    /**
+     * IQS查询内容最长99个字符
+     */
+    private String normalize(String text) {
+        String query = text.trim();
+        return query.length() >= 100 ? query.substring(0, 99) : query;
+    }
+
+    private record SearchKey(String query, String timeRange, int maxPageItems) {
+
     }
 }
@@ -0,0 +1,153 @@
+package io.github.future0923.ai.agent.example.web.search.rag;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.util.Assert;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 推测检索，单次请求使用
+ * <p>
+ * 创建时立即用用户原始问题开始检索，与查询重写、查询扩展的大模型调用并行。之后检索的查询与原始问题几乎相同（编辑距离相似度不低于阈值）时，
+ * 直接复用原始问题的检索结果，不再重复检索；否则交给被代理的检索器。
+ * 所有查询检索完后调用{@link #close()}，推测检索没被用上时取消：还在线程池队列中的不再执行，等待中的结果直接放弃
+ *
+ * @author future0923
+ */
+public class SpeculativeDocumentRetriever implements DocumentRetriever, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpeculativeDocumentRetriever.class);
+
+    private final DocumentRetriever delegate;
+
+    private final String speculativeText;
+
+    private final double similarityThreshold;
+
+    private final CompletableFuture<List<Document>> speculativeDocuments;
+
+    private volatile boolean used;
+
+    private volatile boolean closed;
+
+    private SpeculativeDocumentRetriever(DocumentRetriever delegate, Query query, double similarityThreshold, Executor executor) {
+        this.delegate = delegate;
+        this.speculativeText = normalize(query.text());
+        this.similarityThreshold = similarityThreshold;
+        CompletableFuture<List<Document>> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> closed ? List.<Document>of() : delegate.retrieve(query), executor);
+        } catch (RejectedExecutionException e) {
+            // 线程池满了就不推测了
+            logger.warn("speculative retrieve rejected: {}", e.getMessage());
+            future = CompletableFuture.failedFuture(e);
+        }
+        this.speculativeDocuments = future;
+    }
+
+    /**
+     * 立即开始检索原始问题
+     *
+     * @param delegate            被代理的检索器
+     * @param query               用户原始问题
+     * @param similarityThreshold 复用原始检索结果的最低相似度，0~1
+     * @param executor            原始问题检索的线程池
+     */
+    public static SpeculativeDocumentRetriever start(DocumentRetriever delegate, Query query, double similarityThreshold, Executor executor) {
+        Assert.notNull(delegate, "delegate cannot be null");
+        Assert.notNull(query, "query cannot be null");
+        Assert.notNull(executor, "executor cannot be null");
+        Assert.isTrue(similarityThreshold >= 0 && similarityThreshold <= 1, "similarityThreshold must be between 0 and 1");
+        return new SpeculativeDocumentRetriever(delegate, query, similarityThreshold, executor);
+    }
+
+    @NotNull
+    @Override
+    public List<Document> retrieve(@NotNull Query query) {
+        if (!similar(speculativeText, normalize(query.text()), similarityThreshold)) {
+            return delegate.retrieve(query);
+        }
+        used = true;
+        try {
+            List<Document> documents = speculativeDocuments.join();
+            logger.debug("reuse speculative documents, query: {}", query.text());
+            return documents;
+        } catch (Exception e) {
+            logger.warn("speculative retrieve failed, retrieve again: {}", query.text(), e);
+            return delegate.retrieve(query);
+        }
+    }
+
+    /**
+     * 推测检索没被用上时取消，已经开始的检索（受检索超时限制）完成后结果直接丢弃
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!used && speculativeDocuments.cancel(false)) {
+            logger.debug("speculative documents unused, cancelled: {}", speculativeText);
+        }
+    }
+
+    /**
+     * 忽略大小写、空白和标点
+     */
+    static String normalize(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        text.codePoints()
+                .filter(Character::isLetterOrDigit)
+                .map(Character::toLowerCase)
+                .forEach(sb::appendCodePoint);
+        return sb.toString();
+    }
+
+    /**
+     * 相似度是否不低于阈值
+     */
+    static boolean similar(String left, String right, double threshold) {
+        int maxLength = Math.max(left.length(), right.length());
+        // 长度差就是编辑距离的下界，相似度的上界都达不到阈值时不用算编辑距离
+        if (maxLength > 0 && 1 - (double) Math.abs(left.length() - right.length()) / maxLength < threshold) {
+            return false;
+        }
+        return similarity(left, right) >= threshold;
+    }
+
+    /**
+     * 归一化的编辑距离相似度，1 - 编辑距离 / 较长字符串长度
+     */
+    static double similarity(String left, String right) {
+        int maxLength = Math.max(left.length(), right.length());
+        if (maxLength == 0) {
+            return 1;
+        }
+        int[] previous = new int[right.length() + 1];
+        int[] current = new int[right.length() + 1];
+        for (int j = 0; j <= right.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= left.length(); i++) {
+            current[0] = i;
+            char c = left.charAt(i - 1);
+            for (int j = 1; j <= right.length(); j++) {
+                int cost = c == right.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return 1 - (double) previous[right.length()] / maxLength;
+    }
+}
@@ -1,6 +1,7 @@
 package io.github.future0923.ai.agent.example.web.search.rag;
 
 import io.github.future0923.ai.agent.example.web.search.dto.websearch.GenericSearchResult;
+import io.github.future0923.ai.agent.example.web.search.metrics.WebSearchMetrics;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,8 +9,14 @@ import org.springframework.ai.document.Document;
 import org.springframework.ai.rag.Query;
 import org.springframework.ai.rag.postretrieval.ranking.DocumentRanker;
 import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.web.client.ResourceAccessException;
 
+import java.net.SocketTimeoutException;
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
 
 /**
  * @author future0923
@@ -28,6 +35,12 @@ public class WebSearchDocumentRetriever implements DocumentRetriever {
 
     private final boolean enableRanker;
 
+    private final Duration timeout;
+
+    private final Set<String> metadataFields;
+
+    private final WebSearchMetrics metrics;
+
     private WebSearchDocumentRetriever(Builder builder) {
 
         this.iqsSearchService = builder.iqsSearchService;
@@ -35,15 +48,47 @@ public class WebSearchDocumentRetriever implements DocumentRetriever {
         this.dataClean = builder.dataCleaner;
         this.enableRanker = builder.enableRanker;
         this.documentRanker = builder.documentRanker;
+        this.timeout = builder.timeout;
+        this.metadataFields = builder.metadataFields;
+        this.metrics = builder.metrics;
     }
 
     @NotNull
     @Override
     public List<Document> retrieve(@NotNull Query query) {
+        return retrieve(query, () -> false);
+    }
+
+    /**
+     * 在调用线程上检索（RetrievalAugmentationAdvisor已经把每个扩展查询放到检索线程池中），不再切换线程。
+     * IQS请求的读取超时和重试都限制在timeout内，超时的查询直接丢弃（返回空结果），不拖慢其它扩展查询；
+     * cancelled返回true时（如客户端断开）不再开始后续阶段，直接返回空结果
+     */
+    public List<Document> retrieve(Query query, BooleanSupplier cancelled) {
+        return metrics.record("retrieve", () -> {
+            if (cancelled.getAsBoolean()) {
+                return List.of();
+            }
+            try {
+                return doRetrieve(query, cancelled);
+            } catch (ResourceAccessException e) {
+                if (!(e.getCause() instanceof SocketTimeoutException)) {
+                    throw e;
+                }
+                logger.warn("retrieve timeout after {}ms, drop query: {}", Objects.isNull(timeout) ? -1 : timeout.toMillis(), query.text());
+                return List.of();
+            }
+        });
+    }
+
+    private List<Document> doRetrieve(Query query, BooleanSupplier cancelled) {
         // iqs搜索实时数据
-        GenericSearchResult searchResult = iqsSearchService.search(query);
+        GenericSearchResult searchResult = metrics.record("search", () -> iqsSearchService.search(query, maxResults, timeout));
+        if (cancelled.getAsBoolean()) {
+            return List.of();
+        }
         // 清洗结果
-        List<Document> documentList = dataClean.getData(searchResult);
+        List<Document> documentList = metrics.record("clean", () -> dataClean.getData(searchResult, metadataFields));
         // 限制最大结果数
         List<Document> documents = dataClean.limitResults(documentList, maxResults);
         // 文档重排序
@@ -82,6 +127,15 @@ public class WebSearchDocumentRetriever implements DocumentRetriever {
         // 默认开启 ranking
         private Boolean enableRanker = true;
 
+        // 单个查询的IQS检索截止时间（包括重试），为空时只受传输层的超时和重试次数限制
+        private Duration timeout;
+
+        // Document元数据中保留的pageItem字段
+        private Set<String> metadataFields = DataClean.DEFAULT_METADATA_FIELDS;
+
+        // 各阶段耗时指标，默认不记录
+        private WebSearchMetrics metrics = WebSearchMetrics.noop();
+
         public WebSearchDocumentRetriever.Builder searchService(IQSSearchService searchService) {
 
             this.iqsSearchService = searchService;
@@ -110,6 +164,21 @@ public class WebSearchDocumentRetriever implements DocumentRetriever {
             return this;
         }
 
+        public WebSearchDocumentRetriever.Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public WebSearchDocumentRetriever.Builder metadataFields(Set<String> metadataFields) {
+            this.metadataFields = metadataFields;
+            return this;
+        }
+
+        public WebSearchDocumentRetriever.Builder metrics(WebSearchMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
         public WebSearchDocumentRetriever build() {
             return new WebSearchDocumentRetriever(this);
         }
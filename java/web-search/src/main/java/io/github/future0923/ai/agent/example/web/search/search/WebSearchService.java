@@ -1,8 +1,13 @@
 package io.github.future0923.ai.agent.example.web.search.search;
 
+import io.github.future0923.ai.agent.example.chat.memory.support.SerialConversationAdvisor;
+import io.github.future0923.ai.agent.example.web.search.advisor.RetrievedDocumentsAdvisor;
 import io.github.future0923.ai.agent.example.web.search.advisor.ThinkingContentAdvisor;
+import io.github.future0923.ai.agent.example.web.search.config.WebSearchProperties;
+import io.github.future0923.ai.agent.example.web.search.metrics.WebSearchMetrics;
 import io.github.future0923.ai.agent.example.web.search.rag.DataClean;
 import io.github.future0923.ai.agent.example.web.search.rag.IQSSearchService;
+import io.github.future0923.ai.agent.example.web.search.rag.SpeculativeDocumentRetriever;
 import io.github.future0923.ai.agent.example.web.search.rag.WebSearchDocumentRetriever;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
@@ -10,13 +15,30 @@ import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.RetrievalAugmentationAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
 import org.springframework.ai.rag.generation.augmentation.QueryAugmenter;
 import org.springframework.ai.rag.postretrieval.ranking.DocumentRanker;
 import org.springframework.ai.rag.preretrieval.query.expansion.QueryExpander;
 import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
 import org.springframework.ai.rag.retrieval.join.DocumentJoiner;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
 
 /**
  * @author future0923
@@ -24,6 +46,11 @@ import reactor.core.publisher.Flux;
 @Service
 public class WebSearchService {
 
+    /**
+     * SSE最多缓冲的事件数
+     */
+    private static final int STREAM_BUFFER_SIZE = 256;
+
     private final ChatClient chatClient;
 
     private final WebSearchDocumentRetriever webSearchDocumentRetriever;
@@ -38,48 +65,157 @@ public class WebSearchService {
 
     private final ThinkingContentAdvisor thinkingContentAdvisor;
 
+    private final SerialConversationAdvisor serialConversationAdvisor;
+
     private final ChatMemory chatMemory;
 
+    private final TaskExecutor webSearchTaskExecutor;
+
+    private final WebSearchProperties.Speculative speculative;
+
+    private final WebSearchMetrics webSearchMetrics;
+
     public WebSearchService(ChatClient.Builder builder,
                             IQSSearchService searchService,
                             DataClean dataClean,
                             DocumentRanker documentRanker,
-                            QueryTransformer queryTransformer, QueryExpander queryExpander, DocumentJoiner documentJoiner, QueryAugmenter queryAugmenter, ChatMemory chatMemory) {
+                            QueryTransformer queryTransformer, QueryExpander queryExpander, DocumentJoiner documentJoiner, QueryAugmenter queryAugmenter, ChatMemory chatMemory,
+                            @Qualifier("webSearchTaskExecutor") TaskExecutor webSearchTaskExecutor,
+                            WebSearchProperties webSearchProperties,
+                            WebSearchMetrics webSearchMetrics) {
         this.chatClient = builder.build();
         this.queryTransformer = queryTransformer;
         this.queryExpander = queryExpander;
         this.documentJoiner = documentJoiner;
         this.queryAugmenter = queryAugmenter;
         this.chatMemory = chatMemory;
-        this.thinkingContentAdvisor = new ThinkingContentAdvisor(1);
+        this.webSearchTaskExecutor = webSearchTaskExecutor;
+        this.speculative = webSearchProperties.getSpeculative();
+        this.webSearchMetrics = webSearchMetrics;
+        this.thinkingContentAdvisor = new ThinkingContentAdvisor(ThinkingContentAdvisor.DEFAULT_ORDER);
+        this.serialConversationAdvisor = new SerialConversationAdvisor(
+                SerialConversationAdvisor.DEFAULT_ORDER,
+                webSearchProperties.getMaxQueueWait(),
+                delay -> webSearchMetrics.record("queue", delay)
+        );
         this.webSearchDocumentRetriever = WebSearchDocumentRetriever.builder()
                 .searchService(searchService)
                 .dataCleaner(dataClean)
                 .maxResults(2)
                 .enableRanker(true)
                 .documentRanker(documentRanker)
+                // 单个扩展查询超时后丢弃，不阻塞整体回答
+                .timeout(webSearchProperties.getRetrieveTimeout())
+                .metrics(webSearchMetrics)
                 .build();
     }
 
     public Flux<String> chat(String query, String chatId) {
+        // 订阅时才开始推测检索，避免未订阅的请求白白检索
+        return Flux.defer(() -> {
+            AtomicBoolean cancelled = new AtomicBoolean();
+            return prompt(query, chatId, cancelled::get)
+                    .advisors(thinkingContentAdvisor)
+                    .advisors(new SimpleLoggerAdvisor())
+                    .stream()
+                    .chatResponse()
+                    // 思考内容在元数据中，text中只有思考标签和正文，不能直接用content()
+                    .map(ThinkingContentAdvisor::content)
+                    .filter(StringUtils::hasLength)
+                    .transform(webSearchMetrics::recordStream)
+                    .doOnCancel(() -> cancelled.set(true));
+        });
+    }
+
+    /**
+     * SSE流式回答，事件依次为 retrieval-started、sources、think、token、done
+     * <p>
+     * 客户端断开时取消大模型调用，并放弃还未完成的检索；客户端读得太慢导致缓冲超过上限时直接报错结束
+     */
+    public Flux<ServerSentEvent<Object>> stream(String query, String chatId) {
+        return Flux.defer(() -> {
+            AtomicBoolean cancelled = new AtomicBoolean();
+            Sinks.One<List<Document>> sources = Sinks.one();
+            Flux<ServerSentEvent<Object>> answer = prompt(query, chatId, cancelled::get)
+                    .advisors(new RetrievedDocumentsAdvisor(sources::tryEmitValue, 2))
+                    .advisors(new SimpleLoggerAdvisor())
+                    .stream()
+                    .chatResponse()
+                    .transform(webSearchMetrics::recordStream)
+                    .concatMapIterable(this::answerEvents)
+                    // 没有走到检索（如出错）时结束sources，否则merge不会完成
+                    .doOnTerminate(sources::tryEmitEmpty);
+            Mono<ServerSentEvent<Object>> sourcesEvent = sources.asMono()
+                    .map(documents -> event("sources", documents.stream().map(Document::getMetadata).toList()));
+            return Flux.concat(
+                            Mono.just(event("retrieval-started", query)),
+                            Flux.merge(sourcesEvent, answer),
+                            Mono.just(event("done", "[DONE]"))
+                    )
+                    .doOnCancel(() -> cancelled.set(true))
+                    .onBackpressureBuffer(STREAM_BUFFER_SIZE);
+        });
+    }
+
+    /**
+     * 请求取消后检索直接返回空结果。开启推测检索时，原始问题的检索与查询重写、扩展并行，重写或扩展后的查询与原始问题几乎相同时直接复用结果；
+     * 所有查询检索完才会合并，合并前取消没用上的推测检索
+     */
+    private ChatClient.ChatClientRequestSpec prompt(String query, String chatId, BooleanSupplier cancelled) {
+        DocumentRetriever documentRetriever = expandedQuery -> webSearchDocumentRetriever.retrieve(expandedQuery, cancelled);
+        DocumentJoiner documentJoiner = this.documentJoiner;
+        if (speculative.isEnabled()) {
+            SpeculativeDocumentRetriever speculativeRetriever = SpeculativeDocumentRetriever.start(
+                    documentRetriever,
+                    new Query(query),
+                    speculative.getSimilarityThreshold(),
+                    webSearchTaskExecutor
+            );
+            documentRetriever = speculativeRetriever;
+            documentJoiner = documentsForQuery -> {
+                speculativeRetriever.close();
+                return this.documentJoiner.join(documentsForQuery);
+            };
+        }
         return chatClient.prompt()
                 .user(query)
                 .advisors(
                         RetrievalAugmentationAdvisor.builder()
-                                .documentRetriever(webSearchDocumentRetriever)
+                                .documentRetriever(documentRetriever)
                                 .queryTransformers(queryTransformer)
                                 .queryExpander(queryExpander)
                                 .documentJoiner(documentJoiner)
                                 .queryAugmenter(queryAugmenter)
+                                .taskExecutor(webSearchTaskExecutor)
                                 .build()
                 )
+                // 同一会话的请求依次执行，避免并发读写聊天记忆导致历史交错
+                .advisors(serialConversationAdvisor)
                 .advisors(new MessageChatMemoryAdvisor(chatMemory))
                 .advisors(advisorSpec -> advisorSpec
                         .param(AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
-                        .param(AbstractChatMemoryAdvisor.CHAT_MEMORY_RETRIEVE_SIZE_KEY, 100))
-                .advisors(thinkingContentAdvisor)
-                .advisors(new SimpleLoggerAdvisor())
-                .stream()
-                .content();
+                        .param(AbstractChatMemoryAdvisor.CHAT_MEMORY_RETRIEVE_SIZE_KEY, 100));
+    }
+
+    /**
+     * 思考内容在reasoningContent元数据中，正文在text中，一个片段可能两者都有
+     */
+    private List<ServerSentEvent<Object>> answerEvents(ChatResponse chatResponse) {
+        if (Objects.isNull(chatResponse.getResult())) {
+            return List.of();
+        }
+        AssistantMessage output = chatResponse.getResult().getOutput();
+        List<ServerSentEvent<Object>> events = new ArrayList<>(2);
+        if (output.getMetadata().get("reasoningContent") instanceof String reasoningContent && !reasoningContent.isEmpty()) {
+            events.add(event("think", reasoningContent));
+        }
+        if (StringUtils.hasLength(output.getText())) {
+            events.add(event("token", output.getText()));
+        }
+        return events;
+    }
+
+    private static ServerSentEvent<Object> event(String name, Object data) {
+        return ServerSentEvent.builder(data).event(name).build();
     }
 }
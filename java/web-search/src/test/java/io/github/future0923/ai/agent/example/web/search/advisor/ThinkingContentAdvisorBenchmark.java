@@ -0,0 +1,129 @@
+package io.github.future0923.ai.agent.example.web.search.advisor;
+
+import ch.qos.logback.classic.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * 流式输出每个片段的耗时和分配：每个片段都执行after()重建响应（改动前） vs 按订阅记录状态原样透传
+ * <p>
+ * 一次回答{@link #REASONING_TOKENS}个思考片段加{@link #CONTENT_TOKENS}个正文片段，结果按片段平均
+ * <p>
+ * mvn -Pbenchmark -pl web-search -am test-compile exec:exec -Dbenchmark.module=web-search -Dbenchmark=ThinkingContentAdvisorBenchmark
+ *
+ * @author future0923
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ThinkingContentAdvisorBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThinkingContentAdvisor.class);
+
+    private static final int REASONING_TOKENS = 300;
+
+    private static final int CONTENT_TOKENS = 500;
+
+    private static final int TOKENS = REASONING_TOKENS + CONTENT_TOKENS;
+
+    private final ThinkingContentAdvisor advisor = new ThinkingContentAdvisor(ThinkingContentAdvisor.DEFAULT_ORDER);
+
+    private AdvisedRequest request;
+
+    private List<AdvisedResponse> chunks;
+
+    @Setup
+    public void setup() {
+        // 与Spring Boot默认的日志级别一致，不输出debug日志
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+        request = AdvisedRequest.builder()
+                .chatModel(mock(ChatModel.class))
+                .userText("小米SU7的续航是多少")
+                .build();
+        chunks = new ArrayList<>(TOKENS);
+        for (int i = 0; i < REASONING_TOKENS; i++) {
+            chunks.add(chunk(Map.of("reasoningContent", "思考"), ""));
+        }
+        for (int i = 0; i < CONTENT_TOKENS; i++) {
+            chunks.add(chunk(Map.of(), "续航"));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void afterEachChunk(Blackhole blackhole) {
+        Flux.fromIterable(chunks)
+                .map(ThinkingContentAdvisorBenchmark::after)
+                .subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void stateful(Blackhole blackhole) {
+        advisor.aroundStream(request, advisedRequest -> Flux.fromIterable(chunks))
+                .subscribe(blackhole::consume);
+    }
+
+    /**
+     * 改成按订阅记录状态之前的after()，BaseAdvisor默认的aroundStream对每个片段都会执行
+     */
+    private static AdvisedResponse after(AdvisedResponse advisedResponse) {
+        ChatResponse resp = advisedResponse.response();
+        if (Objects.isNull(resp)) {
+            return advisedResponse;
+        }
+        logger.debug(String.valueOf(resp.getResults().get(0).getOutput().getMetadata()));
+        String reasoningContent = String.valueOf(resp.getResults().get(0).getOutput().getMetadata().get("reasoningContent"));
+        if (StringUtils.hasText(reasoningContent)) {
+            List<Generation> thinkGenerations = resp.getResults().stream()
+                    .map(generation -> {
+                        AssistantMessage output = generation.getOutput();
+                        AssistantMessage thinkAssistantMessage = new AssistantMessage(
+                                String.format("<think>%s</think>", reasoningContent) + output.getText(),
+                                output.getMetadata(),
+                                output.getToolCalls(),
+                                output.getMedia()
+                        );
+                        return new Generation(thinkAssistantMessage, generation.getMetadata());
+                    }).toList();
+            ChatResponse thinkChatResp = ChatResponse.builder().from(resp).generations(thinkGenerations).build();
+            return AdvisedResponse.from(advisedResponse).response(thinkChatResp).build();
+        }
+        return advisedResponse;
+    }
+
+    private static AdvisedResponse chunk(Map<String, Object> metadata, String text) {
+        return new AdvisedResponse(new ChatResponse(List.of(new Generation(new AssistantMessage(text, metadata)))), Map.of());
+    }
+}
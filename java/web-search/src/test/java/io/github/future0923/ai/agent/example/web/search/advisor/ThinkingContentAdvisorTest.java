@@ -0,0 +1,143 @@
+package io.github.future0923.ai.agent.example.web.search.advisor;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.memory.InMemoryChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author future0923
+ */
+public class ThinkingContentAdvisorTest {
+
+    private final ThinkingContentAdvisor advisor = new ThinkingContentAdvisor(1);
+
+    private final AdvisedRequest request = AdvisedRequest.builder()
+            .chatModel(mock(ChatModel.class))
+            .userText("你好")
+            .build();
+
+    @Test
+    public void chunksPassThroughBetweenMarkers() {
+        List<AdvisedResponse> chunks = List.of(
+                chunk("想", ""),
+                chunk("一", ""),
+                chunk("想", ""),
+                chunk("", "你"),
+                chunk("", "好")
+        );
+        List<AdvisedResponse> streamed = stream(chunks);
+        assertEquals("<think>想一想</think>你好", content(streamed));
+        assertEquals(7, streamed.size());
+        assertEquals("<think>", streamed.get(0).response().getResult().getOutput().getText());
+        assertEquals("</think>", streamed.get(4).response().getResult().getOutput().getText());
+        // 模型返回的片段都原样透传
+        assertSame(chunks.get(0), streamed.get(1));
+        assertSame(chunks.get(1), streamed.get(2));
+        assertSame(chunks.get(2), streamed.get(3));
+        assertSame(chunks.get(3), streamed.get(5));
+        assertSame(chunks.get(4), streamed.get(6));
+        // text中只有标签和正文，没有思考内容
+        assertEquals("<think></think>你好", text(streamed));
+    }
+
+    @Test
+    public void reasoningOnlyClosesOnComplete() {
+        List<AdvisedResponse> streamed = stream(List.of(chunk("想", ""), chunk("完了", "")));
+        assertEquals("<think>想完了</think>", content(streamed));
+        assertEquals(4, streamed.size());
+        assertEquals("<think></think>", text(streamed));
+    }
+
+    @Test
+    public void contentOnlyIsUntouched() {
+        List<AdvisedResponse> chunks = List.of(chunk("", "你"), chunk("", ""), chunk("", "好"));
+        List<AdvisedResponse> streamed = stream(chunks);
+        assertEquals("你好", content(streamed));
+        for (int i = 0; i < chunks.size(); i++) {
+            assertSame(chunks.get(i), streamed.get(i));
+        }
+    }
+
+    @Test
+    public void reasoningAndTextInOneChunk() {
+        List<AdvisedResponse> streamed = stream(List.of(chunk("想", "你"), chunk("", "好")));
+        assertEquals("<think>想</think>你好", content(streamed));
+        assertEquals("<think></think>你好", text(streamed));
+        assertEquals("<think>想一想</think>你好", content(stream(List.of(chunk("想", ""), chunk("一想", "你"), chunk("", "好")))));
+    }
+
+    @Test
+    public void emptyChunksWhileThinking() {
+        assertEquals("<think>想一想</think>好", content(stream(List.of(chunk("想", ""), chunk("", ""), chunk("一想", ""), chunk("", "好")))));
+    }
+
+    @Test
+    public void chatMemoryKeepsOnlyAnswer() {
+        ChatModel chatModel = mock(ChatModel.class);
+        when(chatModel.stream(any(Prompt.class))).thenReturn(Flux.just(
+                response("想", ""), response("一想", ""), response("", "你"), response("", "好")
+        ));
+        InMemoryChatMemory chatMemory = new InMemoryChatMemory();
+        String content = ChatClient.create(chatModel).prompt()
+                .user("你好")
+                .advisors(new ThinkingContentAdvisor(ThinkingContentAdvisor.DEFAULT_ORDER), new MessageChatMemoryAdvisor(chatMemory))
+                .stream()
+                .chatResponse()
+                .map(ThinkingContentAdvisor::content)
+                .collect(Collectors.joining())
+                .block();
+        assertEquals("<think>想一想</think>你好", content);
+        List<Message> messages = chatMemory.get(AbstractChatMemoryAdvisor.DEFAULT_CHAT_MEMORY_CONVERSATION_ID, 10);
+        assertEquals("你好", messages.get(messages.size() - 1).getText());
+    }
+
+    @Test
+    public void blockingCall() {
+        AdvisedResponse response = advisor.after(chunk("想一想", "你好"));
+        assertEquals("<think>想一想</think>你好", ThinkingContentAdvisor.content(response.response()));
+    }
+
+    private List<AdvisedResponse> stream(List<AdvisedResponse> chunks) {
+        return advisor.aroundStream(request, advisedRequest -> Flux.fromIterable(chunks)).collectList().block();
+    }
+
+    private static String content(List<AdvisedResponse> responses) {
+        StringBuilder content = new StringBuilder();
+        responses.forEach(response -> content.append(ThinkingContentAdvisor.content(response.response())));
+        return content.toString();
+    }
+
+    private static String text(List<AdvisedResponse> responses) {
+        return responses.stream().map(response -> response.response().getResult().getOutput().getText()).collect(Collectors.joining());
+    }
+
+    private static AdvisedResponse chunk(String reasoningContent, String text) {
+        return new AdvisedResponse(response(reasoningContent, text), Map.of());
+    }
+
+    private static ChatResponse response(String reasoningContent, String text) {
+        Map<String, Object> metadata = reasoningContent.isEmpty() ? Map.of() : Map.of("reasoningContent", reasoningContent);
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text, metadata))));
+    }
+}
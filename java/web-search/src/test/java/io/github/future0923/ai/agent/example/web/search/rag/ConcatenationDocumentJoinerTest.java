@@ -0,0 +1,98 @@
+package io.github.future0923.ai.agent.example.web.search.rag;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author future0923
+ */
+public class ConcatenationDocumentJoinerTest {
+
+    @Test
+    public void resultDoesNotDependOnQueryOrder() {
+        ConcatenationDocumentJoiner joiner = joiner(ConcatenationDocumentJoiner.Mode.RECIPROCAL_RANK_FUSION, 3);
+        Map<Query, List<List<Document>>> forward = new LinkedHashMap<>();
+        forward.put(new Query("a"), List.of(List.of(document("1", "l1"), document("2", "l2"))));
+        forward.put(new Query("b"), List.of(List.of(document("3", "l3"), document("4", "l4"))));
+        Map<Query, List<List<Document>>> backward = new LinkedHashMap<>();
+        backward.put(new Query("b"), forward.get(new Query("b")));
+        backward.put(new Query("a"), forward.get(new Query("a")));
+        assertEquals(ids(joiner.join(forward)), ids(joiner.join(backward)));
+        assertEquals(List.of("1", "3", "2"), ids(joiner.join(forward)));
+    }
+
+    @Test
+    public void reciprocalRankFusionSumsScoresAcrossQueries() {
+        ConcatenationDocumentJoiner joiner = joiner(ConcatenationDocumentJoiner.Mode.RECIPROCAL_RANK_FUSION, 3);
+        Map<Query, List<List<Document>>> documents = new LinkedHashMap<>();
+        documents.put(new Query("a"), List.of(List.of(document("1", "l1"), document("2", "shared"))));
+        // 同一链接在不同查询中id不同
+        documents.put(new Query("b"), List.of(List.of(document("3", "l3"), document("4", "shared"))));
+        List<Document> joined = joiner.join(documents);
+        assertEquals(List.of("2", "1", "3"), ids(joined));
+        assertEquals(2.0 / 62, joined.get(0).getScore(), 1e-9);
+        assertEquals(1.0 / 61, joined.get(1).getScore(), 1e-9);
+    }
+
+    @Test
+    public void reciprocalRankFusionRefillsDuplicates() {
+        ConcatenationDocumentJoiner joiner = joiner(ConcatenationDocumentJoiner.Mode.RECIPROCAL_RANK_FUSION, 2);
+        // 2和1的source不同（融合时是两个候选），link相同（去重时是同一文档），应由3补上
+        Document first = Document.builder().id("1").text("1").metadata(Map.of("source", "s1", "link", "l1")).build();
+        Document duplicate = Document.builder().id("2").text("2").metadata(Map.of("source", "s2", "link", "l1")).build();
+        Map<Query, List<List<Document>>> documents = Map.of(
+                new Query("a"), List.of(List.of(first, duplicate, document("3", "l3"), document("4", "l4")))
+        );
+        assertEquals(List.of("1", "3"), ids(joiner.join(documents)));
+    }
+
+    @Test
+    public void reciprocalRankFusionRefillsOverSeveralRounds() {
+        ConcatenationDocumentJoiner joiner = joiner(ConcatenationDocumentJoiner.Mode.RECIPROCAL_RANK_FUSION, 3);
+        // 2、3、4与1的link相同，第一轮只留下1，之后两轮补上5、6
+        Document first = Document.builder().id("1").text("1").metadata(Map.of("source", "s1", "link", "l1")).build();
+        Document second = Document.builder().id("2").text("2").metadata(Map.of("source", "s2", "link", "l1")).build();
+        Document third = Document.builder().id("3").text("3").metadata(Map.of("source", "s3", "link", "l1")).build();
+        Document fourth = Document.builder().id("4").text("4").metadata(Map.of("source", "s4", "link", "l1")).build();
+        Map<Query, List<List<Document>>> documents = Map.of(
+                new Query("a"), List.of(List.of(first, second, third, fourth, document("5", "l5"), document("6", "l6"), document("7", "l7")))
+        );
+        assertEquals(List.of("1", "5", "6"), ids(joiner.join(documents)));
+    }
+
+    @Test
+    public void concatenationDuplicatesDoNotUseBudget() {
+        ConcatenationDocumentJoiner joiner = joiner(ConcatenationDocumentJoiner.Mode.CONCATENATION, 4);
+        Map<Query, List<List<Document>>> documents = new LinkedHashMap<>();
+        documents.put(new Query("a"), List.of(List.of(document("1", "l1"), document("2", "l2"), document("5", "l5"))));
+        documents.put(new Query("b"), List.of(List.of(document("3", "l1"), document("4", "l4"), document("6", "l6"))));
+        assertEquals(List.of("1", "2", "4", "6"), ids(joiner.join(documents)));
+    }
+
+    @Test
+    public void fewerCandidatesThanTopK() {
+        ConcatenationDocumentJoiner joiner = joiner(ConcatenationDocumentJoiner.Mode.RECIPROCAL_RANK_FUSION, 10);
+        Map<Query, List<List<Document>>> documents = Map.of(new Query("a"), List.of(List.of(document("1", "l1"))));
+        assertEquals(List.of("1"), ids(joiner.join(documents)));
+        assertEquals(List.of(), joiner.join(Map.of()));
+    }
+
+    private static ConcatenationDocumentJoiner joiner(ConcatenationDocumentJoiner.Mode mode, int topK) {
+        return ConcatenationDocumentJoiner.builder().mode(mode).topK(topK).build();
+    }
+
+    private static Document document(String id, String link) {
+        return Document.builder().id(id).text(id).metadata(Map.of("link", link)).build();
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).toList();
+    }
+}
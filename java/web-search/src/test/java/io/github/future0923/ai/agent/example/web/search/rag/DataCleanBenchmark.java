@@ -0,0 +1,78 @@
+package io.github.future0923.ai.agent.example.web.search.rag;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 清洗一条IQS正文的耗时和分配：三次replaceAll（改动前） vs 单次遍历的sanitize
+ * <p>
+ * 正文仿照IQS的mainText：分词之间用制表符分隔，段落之间换行，夹杂少量HTML标签和零宽字符
+ * <p>
+ * mvn -Pbenchmark -pl web-search -am test-compile exec:exec -Dbenchmark.module=web-search -Dbenchmark=DataCleanBenchmark
+ *
+ * @author future0923
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DataCleanBenchmark {
+
+    private static final String[] PARAGRAPH = {
+            "昨天\t，\t小米\t汽车\t没有\t发布\t，\t但\t相关\t的\t信息\t透露\t的\t差\t不\t多\t了\t。\n",
+            "在\t发布\t会\t现场\t，\t雷军\t直接\t称\t<em>小米\tS\tU\t7</em>\t对\t标\t特斯拉\t保时捷\t。\r\n",
+            "大家\t比较\t感\t兴趣\t的\t性能\t方面\t，\t2\t.\t78\ts\t的\t0\t-\t100\tkm\t/\th\t加速\u200B\t。<br>\n",
+            "\uFEFF续航\t方面\t，\t101\tkWh\t电池\t容量\t，\t实现\tCLTC\t续航\t800\tkm\t。\n\n"
+    };
+
+    @Param({"1000", "8000"})
+    public int length;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder(length + 100);
+        for (int i = 0; builder.length() < length; i++) {
+            builder.append(PARAGRAPH[i % PARAGRAPH.length]);
+        }
+        text = builder.toString();
+        if (!Objects.equals(regex(text), DataClean.sanitize(text))) {
+            throw new IllegalStateException("sanitize differs from regex");
+        }
+    }
+
+    @Benchmark
+    public String regex() {
+        return regex(text);
+    }
+
+    @Benchmark
+    public String sanitize() {
+        return DataClean.sanitize(text);
+    }
+
+    /**
+     * 改成单次遍历之前的清洗方式
+     */
+    private static String regex(String text) {
+        return text.replaceAll("<[^>]+>", "")
+                .replaceAll("[\\n\\t\\r]+", " ")
+                .replaceAll("[\\u200B-\\u200D\\uFEFF]", "")
+                .trim();
+    }
+}
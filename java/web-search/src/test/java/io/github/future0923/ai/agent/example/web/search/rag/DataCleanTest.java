@@ -0,0 +1,68 @@
+package io.github.future0923.ai.agent.example.web.search.rag;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author future0923
+ */
+public class DataCleanTest {
+
+    /**
+     * 改成单次遍历之前的清洗方式
+     */
+    private static String regex(String text) {
+        return text.replaceAll("<[^>]+>", "")
+                .replaceAll("[\\n\\t\\r]+", " ")
+                .replaceAll("[\\u200B-\\u200D\\uFEFF]", "")
+                .trim();
+    }
+
+    @Test
+    public void edgeCases() {
+        assertSanitize("<>", "<>");
+        assertSanitize("a<>b", "a<>b");
+        assertSanitize("a < b", "a < b");
+        assertSanitize("a<b", "a<b");
+        assertSanitize("a>b<c", "a>b<c");
+        assertSanitize("<<b>x", "x");
+        // 标签去除后前后的换行合并为一个空格
+        assertSanitize("a\n<br>\nb", "a b");
+        // 零宽字符在换行合并之后才去除，两侧的换行各自变成空格
+        assertSanitize("a\n\u200B\nb", "a  b");
+        assertSanitize("\uFEFF<p>标题</p>\r\n\t正文\u200C", "标题 正文");
+        assertSanitize("", "");
+        assertSanitize(" \n<i></i>\u200D ", "");
+    }
+
+    @Test
+    public void sameAsRegex() {
+        char[] alphabet = {'<', '>', 'a', '中', ' ', '\n', '\t', '\r', '\u200B', '\u200D', '\uFEFF', '/'};
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(16);
+            for (int j = 0; j < length; j++) {
+                text.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            String input = text.toString();
+            assertEquals(regex(input), DataClean.sanitize(input), () -> "input: " + escape(input));
+        }
+    }
+
+    private static void assertSanitize(String input, String expected) {
+        assertEquals(regex(input), expected, "regex: " + escape(input));
+        assertEquals(expected, DataClean.sanitize(input), "sanitize: " + escape(input));
+    }
+
+    private static String escape(String text) {
+        StringBuilder builder = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            builder.append(c < ' ' || c > '~' && c < '一' ? String.format("\\u%04X", (int) c) : String.valueOf(c));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.future0923.ai.agent.example.web.search.rag;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author future0923
+ */
+public class IQSRetryInterceptorTest {
+
+    private final MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, URI.create("https://cloud-iqs.aliyuncs.com/search/genericSearch"));
+
+    @Test
+    public void retriesWithoutDeadline() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        ClientHttpResponse response = new IQSRetryInterceptor(2, Duration.ofMillis(1))
+                .intercept(request, new byte[0], unavailable(attempts, 0));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void stopsRetryingAtDeadline() {
+        AtomicInteger attempts = new AtomicInteger();
+        IQSRetryInterceptor interceptor = new IQSRetryInterceptor(5, Duration.ofMillis(1));
+        long start = System.nanoTime();
+        ClientHttpResponse response = IQSDeadline.call(Duration.ofMillis(100), () -> intercept(interceptor, unavailable(attempts, 40)));
+        long elapsed = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        // 每次40ms，100ms内最多3次，之后返回最后一次的503
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, status(response));
+        assertTrue(attempts.get() <= 3, "attempts: " + attempts.get());
+        assertTrue(elapsed < 200, "elapsed: " + elapsed);
+    }
+
+    @Test
+    public void expiredDeadlineFailsLikeReadTimeout() {
+        AtomicInteger attempts = new AtomicInteger();
+        IQSRetryInterceptor interceptor = new IQSRetryInterceptor(2, Duration.ofMillis(1));
+        UncheckedIOException e = assertThrows(UncheckedIOException.class,
+                () -> IQSDeadline.call(Duration.ZERO, () -> intercept(interceptor, unavailable(attempts, 0))));
+        assertTrue(e.getCause() instanceof SocketTimeoutException);
+        assertEquals(0, attempts.get());
+    }
+
+    @Test
+    public void remainingIsCappedByDeadline() {
+        assertEquals(Duration.ofSeconds(10), IQSDeadline.remaining(Duration.ofSeconds(10)));
+        Duration remaining = IQSDeadline.call(Duration.ofSeconds(1), () -> IQSDeadline.remaining(Duration.ofSeconds(10)));
+        assertTrue(remaining.compareTo(Duration.ofSeconds(1)) <= 0 && remaining.toMillis() > 0, "remaining: " + remaining);
+        // 嵌套时取较早的截止时间
+        Duration nested = IQSDeadline.call(Duration.ofMillis(500), () -> IQSDeadline.call(Duration.ofSeconds(5), () -> IQSDeadline.remaining(null)));
+        assertTrue(nested.compareTo(Duration.ofMillis(500)) <= 0, "nested: " + nested);
+    }
+
+    private ClientHttpResponse intercept(IQSRetryInterceptor interceptor, ClientHttpRequestExecution execution) {
+        try {
+            return interceptor.intercept(request, new byte[0], execution);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ClientHttpRequestExecution unavailable(AtomicInteger attempts, long latencyMillis) {
+        return (request, body) -> {
+            attempts.incrementAndGet();
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new MockClientHttpResponse(new byte[0], HttpStatus.SERVICE_UNAVAILABLE);
+        };
+    }
+
+    private static HttpStatus status(ClientHttpResponse response) {
+        try {
+            return HttpStatus.valueOf(response.getStatusCode().value());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.future0923.ai.agent.example.web.search.rag;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.future0923.ai.agent.example.web.search.dto.websearch.GenericSearchResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析一次IQS返回结果的耗时和分配：整个响应绑定成GenericSearchResult（改动前RestClient的做法） vs 流式解析只绑定前2条
+ * <p>
+ * mvn -Pbenchmark -pl web-search -am test-compile exec:exec -Dbenchmark.module=web-search -Dbenchmark=IQSSearchResultReaderBenchmark
+ *
+ * @author future0923
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IQSSearchResultReaderBenchmark {
+
+    /**
+     * 与WebSearchDocumentRetriever的maxResults默认值一致
+     */
+    private static final int MAX_RESULTS = 2;
+
+    /**
+     * 单条结果mainText、markdownText的字符数
+     */
+    private static final int TEXT_LENGTH = 4000;
+
+    @Param({"10", "20"})
+    public int pageItems;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final IQSSearchResultReader reader = new IQSSearchResultReader();
+
+    private byte[] body;
+
+    @Setup
+    public void setup() throws IOException {
+        List<Map<String, Object>> items = new ArrayList<>(pageItems);
+        for (int i = 0; i < pageItems; i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("cardType", "structure_web_info");
+            item.put("title", "小米SU7售价22.99万元起 第" + i + "条");
+            item.put("htmlTitle", "<em>小米</em>SU7售价22.99万元起 第" + i + "条");
+            item.put("link", "https://baijiahao.baidu.com/s?id=" + (1787881554557805096L + i));
+            item.put("displayLink", "baijiahao.baidu.com");
+            item.put("hostname", "新华网");
+            item.put("htmlSnippet", text("100km/h-0制动能力上，仅有33.3m，<em>小米SU7</em>确实表现不错。", 300));
+            item.put("mainText", text("在发布会现场，雷军直接称小米SU7对标特斯拉保时捷，有100项行业领先。\n", TEXT_LENGTH));
+            item.put("markdownText", text("## 小米SU7\n\n续航方面，101kWh电池容量，实现CLTC续航800km。\n", TEXT_LENGTH));
+            item.put("mime", "text/html");
+            item.put("publishTime", 1710000000000L + i);
+            item.put("score", 0.9 - i * 0.01);
+            item.put("pageMap", Map.of("siteName", "百家号"));
+            items.add(item);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("requestId", "req-1");
+        response.put("pageItems", items);
+        response.put("queryContext", Map.of("originalQuery", Map.of("query", "小米SU7", "timeRange", "OneWeek")));
+        response.put("searchInformation", Map.of("searchTime", 120, "total", 1000));
+        body = objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public GenericSearchResult bindAll() throws IOException {
+        return objectMapper.readValue(new ByteArrayInputStream(body), GenericSearchResult.class);
+    }
+
+    @Benchmark
+    public GenericSearchResult streamFirstItems() throws IOException {
+        return reader.read(new ByteArrayInputStream(body), MAX_RESULTS);
+    }
+
+    private static String text(String sentence, int length) {
+        StringBuilder text = new StringBuilder(length + sentence.length());
+        while (text.length() < length) {
+            text.append(sentence);
+        }
+        return text.substring(0, length);
+    }
+}
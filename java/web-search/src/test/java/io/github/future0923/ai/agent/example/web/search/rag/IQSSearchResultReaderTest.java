@@ -0,0 +1,76 @@
+package io.github.future0923.ai.agent.example.web.search.rag;
+
+import io.github.future0923.ai.agent.example.web.search.dto.websearch.GenericSearchResult;
+import io.github.future0923.ai.agent.example.web.search.exception.ProjectException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author future0923
+ */
+public class IQSSearchResultReaderTest {
+
+    private static final String BODY = """
+            {
+              "requestId": "req-1",
+              "weiboItems": [{"text": "跳过"}],
+              "pageItems": [
+                {"title": "第一条", "link": "https://a.com", "mainText": "正文1", "unknownField": {"nested": [1, 2]}},
+                {"title": "第二条", "link": "https://b.com", "mainText": "正文2"},
+                {"title": "第三条", "link": "https://c.com", "mainText": "正文3"}
+              ],
+              "queryContext": {"originalQuery": {"query": "小米SU7", "timeRange": "OneWeek"}},
+              "searchInformation": {"searchTime": 120},
+              "extra": {"a": [1, {"b": 2}]}
+            }
+            """;
+
+    private final IQSSearchResultReader reader = new IQSSearchResultReader();
+
+    @Test
+    public void bindOnlyMaxPageItems() throws IOException {
+        GenericSearchResult result = read(BODY, 2);
+        assertEquals(List.of("第一条", "第二条"), result.getPageItems().stream().map(item -> item.getTitle()).toList());
+        assertEquals("正文1", result.getPageItems().get(0).getMainText());
+        // pageItems之后的字段照常解析
+        assertEquals("req-1", result.getRequestId());
+        assertEquals("小米SU7", result.getQueryContext().getOriginalQuery().getQuery());
+        assertEquals("OneWeek", result.getQueryContext().getOriginalQuery().getTimeRange());
+    }
+
+    @Test
+    public void zeroMaxPageItems() throws IOException {
+        GenericSearchResult result = read(BODY, 0);
+        assertTrue(result.getPageItems().isEmpty());
+        assertEquals("req-1", result.getRequestId());
+        assertEquals("小米SU7", result.getQueryContext().getOriginalQuery().getQuery());
+    }
+
+    @Test
+    public void pageItemsNotArray() throws IOException {
+        GenericSearchResult result = read("""
+                {"pageItems": {"title": "不是数组"}, "requestId": "req-2"}
+                """, 5);
+        assertTrue(result.getPageItems().isEmpty());
+        assertEquals("req-2", result.getRequestId());
+        assertNull(result.getQueryContext());
+    }
+
+    @Test
+    public void bodyNotObject() {
+        assertThrows(ProjectException.class, () -> read("[]", 5));
+    }
+
+    private GenericSearchResult read(String body, int maxPageItems) throws IOException {
+        return reader.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), maxPageItems);
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.future0923.ai.agent.example.web.search.rag;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author future0923
+ */
+public class SpeculativeDocumentRetrieverTest {
+
+    private final List<String> retrieved = new ArrayList<>();
+
+    @Test
+    public void normalize() {
+        assertEquals("小米su7多少钱", SpeculativeDocumentRetriever.normalize(" 小米 SU7，多少钱？ "));
+        assertEquals("", SpeculativeDocumentRetriever.normalize("，。! "));
+    }
+
+    @Test
+    public void similarity() {
+        assertEquals(1, SpeculativeDocumentRetriever.similarity("", ""));
+        assertEquals(1, SpeculativeDocumentRetriever.similarity("abc", "abc"));
+        assertEquals(0, SpeculativeDocumentRetriever.similarity("abc", ""));
+        assertEquals(1 - 1.0 / 3, SpeculativeDocumentRetriever.similarity("abc", "abd"), 1e-9);
+        assertEquals(1 - 3.0 / 7, SpeculativeDocumentRetriever.similarity("kitten", "sitting"), 1e-9);
+        // 长度相差很大时也返回真实的相似度
+        assertEquals(0.375, SpeculativeDocumentRetriever.similarity("abc", "abcdefgh"), 1e-9);
+    }
+
+    @Test
+    public void similarUsesThreshold() {
+        // 相似度0.375，低于0.5的阈值也能命中
+        assertTrue(SpeculativeDocumentRetriever.similar("abc", "abcdefgh", 0.3));
+        assertFalse(SpeculativeDocumentRetriever.similar("abc", "abcdefgh", 0.4));
+        assertTrue(SpeculativeDocumentRetriever.similar("", "", 1));
+        assertTrue(SpeculativeDocumentRetriever.similar("abc", "xyz", 0));
+        assertFalse(SpeculativeDocumentRetriever.similar("abc", "abd", 0.7));
+    }
+
+    @Test
+    public void reuseSpeculativeDocuments() {
+        SpeculativeDocumentRetriever retriever = SpeculativeDocumentRetriever.start(delegate(), new Query("小米SU7多少钱"), 0.85, Runnable::run);
+        List<Document> documents = retriever.retrieve(new Query("小米 SU7 多少钱？"));
+        assertEquals("小米SU7多少钱", documents.get(0).getText());
+        assertEquals(List.of("小米SU7多少钱"), retrieved);
+    }
+
+    @Test
+    public void retrieveDifferentQuery() {
+        SpeculativeDocumentRetriever retriever = SpeculativeDocumentRetriever.start(delegate(), new Query("小米SU7多少钱"), 0.85, Runnable::run);
+        assertEquals("特斯拉Model3多少钱", retriever.retrieve(new Query("特斯拉Model3多少钱")).get(0).getText());
+        assertEquals(List.of("小米SU7多少钱", "特斯拉Model3多少钱"), retrieved);
+    }
+
+    @Test
+    public void fallbackWhenSpeculativeFails() {
+        DocumentRetriever failFirst = query -> {
+            retrieved.add(query.text());
+            if (retrieved.size() == 1) {
+                throw new IllegalStateException("IQS unavailable");
+            }
+            return List.of(new Document(query.text()));
+        };
+        SpeculativeDocumentRetriever retriever = SpeculativeDocumentRetriever.start(failFirst, new Query("小米SU7多少钱"), 0.85, Runnable::run);
+        assertEquals("小米SU7多少钱", retriever.retrieve(new Query("小米SU7多少钱")).get(0).getText());
+        assertEquals(2, retrieved.size());
+    }
+
+    @Test
+    public void fallbackWhenRejected() {
+        SpeculativeDocumentRetriever retriever = SpeculativeDocumentRetriever.start(delegate(), new Query("小米SU7多少钱"), 0.85, command -> {
+            throw new RejectedExecutionException("full");
+        });
+        assertEquals("小米SU7多少钱", retriever.retrieve(new Query("小米SU7多少钱")).get(0).getText());
+        assertEquals(List.of("小米SU7多少钱"), retrieved);
+    }
+
+    @Test
+    public void closeCancelsUnusedSpeculation() {
+        List<Runnable> queued = new ArrayList<>();
+        SpeculativeDocumentRetriever retriever = SpeculativeDocumentRetriever.start(delegate(), new Query("小米SU7多少钱"), 0.85, queued::add);
+        assertEquals("特斯拉Model3多少钱", retriever.retrieve(new Query("特斯拉Model3多少钱")).get(0).getText());
+        retriever.close();
+        // 队列中的推测检索取消后不再调用检索器
+        queued.forEach(Runnable::run);
+        assertEquals(List.of("特斯拉Model3多少钱"), retrieved);
+    }
+
+    @Test
+    public void closeKeepsUsedSpeculation() {
+        SpeculativeDocumentRetriever retriever = SpeculativeDocumentRetriever.start(delegate(), new Query("小米SU7多少钱"), 0.85, Runnable::run);
+        retriever.retrieve(new Query("小米SU7多少钱"));
+        retriever.close();
+        retriever.close();
+        assertEquals("小米SU7多少钱", retriever.retrieve(new Query("小米SU7多少钱")).get(0).getText());
+        assertEquals(List.of("小米SU7多少钱"), retrieved);
+    }
+
+    private DocumentRetriever delegate() {
+        return query -> {
+            retrieved.add(query.text());
+            return List.of(new Document(query.text()));
+        };
+    }
+}